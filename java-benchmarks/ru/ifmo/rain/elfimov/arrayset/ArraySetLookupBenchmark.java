@@ -0,0 +1,106 @@
+package ru.ifmo.rain.elfimov.arrayset;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of {@link ArraySet} lookups of random keys with the sorted list only and with {@link EytzingerLayout}.
+ * <br>
+ * Set holds even numbers below <strong>2 * size</strong>, so a half of keys are absent.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@State(Scope.Thread)
+public class ArraySetLookupBenchmark {
+    private static final int KEYS = 1 << 16;
+
+    @Param({"1000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean readOptimized;
+
+    private ArraySet<Integer> set;
+    private Integer[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Integer> elements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            elements.add(2 * i);
+        }
+        Collections.shuffle(elements, new Random(size));
+
+        set = new ArraySet<>(elements, null, readOptimized);
+
+        Random random = new Random(KEYS);
+        keys = new Integer[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = random.nextInt(2 * size);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public int contains() {
+        int found = 0;
+
+        for (Integer key : keys) {
+            if (set.contains(key)) {
+                found++;
+            }
+        }
+
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public int floor() {
+        int sum = 0;
+
+        for (Integer key : keys) {
+            Integer element = set.floor(key);
+            if (element != null) {
+                sum += element;
+            }
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public int ceiling() {
+        int sum = 0;
+
+        for (Integer key : keys) {
+            Integer element = set.ceiling(key);
+            if (element != null) {
+                sum += element;
+            }
+        }
+
+        return sum;
+    }
+}
@@ -0,0 +1,130 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Comparison of {@link RecursiveWalk} execution modes over one synthetic tree.
+ * <br>
+ * Usage: java ExecutionModeBenchmark [files] [file size] [threads] [files in flight] [runs]
+ * <br>
+ * The tree of <strong>files</strong> files of <strong>file size</strong> bytes is created in a temporary
+ * directory, then each mode walks it <strong>runs</strong> times after one warm-up run and the median time
+ * is printed. Platform-thread pool is run with <strong>threads</strong> threads, virtual threads
+ * and asynchronous reads keep up to <strong>files in flight</strong> files open.
+ * Virtual threads are skipped when the running JVM does not support them.
+ */
+public class ExecutionModeBenchmark {
+    private static final int FILES_PER_DIRECTORY = 100;
+    private static final String[] DEFAULTS = {"10000", "4096", "8", "1024", "5"};
+
+    public static void main(String[] args) {
+        if (args == null || args.length > DEFAULTS.length || Arrays.asList(args).contains(null)) {
+            System.err.println("Usage: java ExecutionModeBenchmark [files] [file size] [threads] [files in flight] [runs]");
+            return;
+        }
+
+        String[] values = Arrays.copyOf(DEFAULTS, DEFAULTS.length);
+        System.arraycopy(args, 0, values, 0, args.length);
+
+        try {
+            int files = Integer.parseInt(values[0]);
+            int fileSize = Integer.parseInt(values[1]);
+            String threads = values[2];
+            String inFlight = values[3];
+            int runs = Integer.parseInt(values[4]);
+
+            if (files < 1 || fileSize < 0 || runs < 1) {
+                System.err.println("Files and runs must be positive, file size must be non-negative");
+                return;
+            }
+
+            Path directory = Files.createTempDirectory("walk-benchmark");
+            try {
+                Path input = createTree(directory, files, fileSize);
+                String output = directory.resolve("output.txt").toString();
+
+                run("sequential", runs, input.toString(), output);
+                run("platform threads", runs, input.toString(), output, "--threads", threads);
+                run("virtual threads", runs, input.toString(), output, "--virtual-threads", inFlight);
+                run("async", runs, input.toString(), output, "--async", inFlight, "--threads", threads);
+            } finally {
+                delete(directory);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Arguments must be integers: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Cannot create benchmark tree: " + e.getMessage());
+        }
+    }
+
+    private static Path createTree(Path directory, int files, int fileSize) throws IOException {
+        Path root = directory.resolve("tree");
+        Random random = new Random(files);
+        byte[] content = new byte[fileSize];
+
+        for (int i = 0; i < files; i++) {
+            Path subdirectory = root.resolve(Integer.toString(i / FILES_PER_DIRECTORY));
+            if (i % FILES_PER_DIRECTORY == 0) {
+                Files.createDirectories(subdirectory);
+            }
+
+            random.nextBytes(content);
+            Files.write(subdirectory.resolve(i + ".bin"), content);
+        }
+
+        Path input = directory.resolve("input.txt");
+        Files.write(input, Collections.singletonList(root.toString()));
+
+        return input;
+    }
+
+    private static void run(String mode, int runs, String input, String output, String... options) {
+        List<String> args = new ArrayList<>(Arrays.asList(input, output));
+        args.addAll(Arrays.asList(options));
+
+        long[] times = new long[runs];
+
+        try {
+            new RecursiveWalk().run(args.toArray(new String[0]));
+
+            for (int i = 0; i < runs; i++) {
+                long start = System.nanoTime();
+                new RecursiveWalk().run(args.toArray(new String[0]));
+                times[i] = System.nanoTime() - start;
+            }
+        } catch (RecursiveWalkException e) {
+            System.out.println(String.format(Locale.ROOT, "%-18s skipped: %s", mode, e.getMessage()));
+            return;
+        }
+
+        Arrays.sort(times);
+        System.out.println(String.format(Locale.ROOT, "%-18s %10.1f ms", mode, times[runs / 2] / 1e6));
+    }
+
+    private static void delete(Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
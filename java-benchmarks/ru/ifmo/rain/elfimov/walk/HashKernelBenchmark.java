@@ -0,0 +1,93 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link FileHasher} kernels over one buffer of content.
+ * <br>
+ * Content is held in a heap, a direct or a memory-mapped buffer, as {@link FileContentReader} passes it.
+ * Scores are in operations per second, multiply by <strong>size</strong> to get bytes per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HashKernelBenchmark {
+    @Param({"fnv32", "fnv64", "xxhash64", "sha256"})
+    public String algorithm;
+
+    @Param({"64", "4096", "65536", "1048576"})
+    public int size;
+
+    @Param({"heap", "direct", "mapped"})
+    public String buffer;
+
+    private FileHasher hasher;
+    private ByteBuffer content;
+    private Path file;
+    private FileChannel channel;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        hasher = HashAlgorithm.forName(algorithm).createHasher();
+
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+
+        switch (buffer) {
+            case "heap":
+                content = ByteBuffer.wrap(bytes);
+                break;
+            case "direct":
+                content = ByteBuffer.allocateDirect(size).put(bytes);
+                break;
+            case "mapped":
+                file = Files.createTempFile("hash-kernel", ".bin");
+                Files.write(file, bytes);
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+                content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown buffer '" + buffer + "'");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (channel != null) {
+            channel.close();
+            Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public byte[] hash() {
+        content.clear();
+        hasher.update(content);
+
+        return hasher.digest();
+    }
+}
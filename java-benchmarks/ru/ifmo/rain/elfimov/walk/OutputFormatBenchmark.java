@@ -0,0 +1,86 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of formatting info lines by {@link HashOutputWriter}.
+ * <br>
+ * Lines are written to a channel, which drops all bytes, so only hex and UTF-8 encoding is measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OutputFormatBenchmark {
+    private static final String ASCII_PATH = "/home/user/projects/walk/src/main/java/ru/ifmo/rain/Walk.java";
+    private static final String UNICODE_PATH = "/home/\u043f\u043e\u043b\u044c\u0437\u043e\u0432\u0430\u0442\u0435\u043b\u044c/\u043f\u0440\u043e\u0435\u043a\u0442\u044b/\u043e\u0431\u0445\u043e\u0434/\u0438\u0441\u0445\u043e\u0434\u043d\u0438\u043a\u0438/\u041e\u0431\u0445\u043e\u0434.java";
+
+    @Param({"fnv32", "sha256"})
+    public String algorithm;
+
+    @Param({"ascii", "unicode"})
+    public String path;
+
+    private HashOutputWriter writer;
+    private byte[] hash;
+    private String file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws RecursiveWalkException {
+        writer = new HashOutputWriter(new NullChannel(), true, new WalkMetrics());
+        hash = new byte[HashAlgorithm.forName(algorithm).getDigestLength()];
+        new Random(hash.length).nextBytes(hash);
+        file = "ascii".equals(path) ? ASCII_PATH : UNICODE_PATH;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws RecursiveWalkException {
+        writer.close();
+    }
+
+    @Benchmark
+    public void write() throws RecursiveWalkException {
+        writer.write(hash, file);
+    }
+
+    /**
+     * A channel, which drops all written bytes.
+     */
+    private static class NullChannel implements WritableByteChannel {
+        @Override
+        public int write(ByteBuffer src) {
+            int written = src.remaining();
+            src.position(src.limit());
+
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of the whole {@link RecursiveWalk} run over a synthetic tree.
+ * <br>
+ * Tree is described by <strong>tree</strong> as <strong>files</strong>x<strong>size</strong>:
+ * many tiny files measure walking and output, few huge files measure reading and hashing.
+ * Files stay in the page cache after the first run, so storage latency is not measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WalkBenchmark {
+    private static final int FILES_PER_DIRECTORY = 100;
+    private static final int MAX_WRITE_SIZE = 1 << 20;
+
+    @Param({"20000x64", "8x67108864"})
+    public String tree;
+
+    @Param({"", "--threads 4", "--async 256 --threads 4", "--fork-join --threads 4"})
+    public String options;
+
+    private Path directory;
+    private String[] args;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String[] layout = tree.split("x");
+        int files = Integer.parseInt(layout[0]);
+        long size = Long.parseLong(layout[1]);
+
+        directory = Files.createTempDirectory("walk-benchmark");
+        Path root = directory.resolve("tree");
+        Random random = new Random(files);
+        byte[] content = new byte[(int) Math.min(size, MAX_WRITE_SIZE)];
+
+        for (int i = 0; i < files; i++) {
+            Path subdirectory = root.resolve(Integer.toString(i / FILES_PER_DIRECTORY));
+            Files.createDirectories(subdirectory);
+
+            random.nextBytes(content);
+            Path file = subdirectory.resolve(i + ".bin");
+            Files.write(file, content);
+
+            for (long written = content.length; written < size; written += content.length) {
+                Files.write(file, content, StandardOpenOption.APPEND);
+            }
+        }
+
+        Path input = directory.resolve("input.txt");
+        Files.write(input, Collections.singletonList(root.toString()));
+
+        List<String> arguments = new ArrayList<>(Arrays.asList(input.toString(), directory.resolve("output.txt").toString()));
+        if (!options.isEmpty()) {
+            arguments.addAll(Arrays.asList(options.split(" ")));
+        }
+        args = arguments.toArray(new String[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Benchmark
+    public void walk() throws RecursiveWalkException {
+        new RecursiveWalk().run(args);
+    }
+}
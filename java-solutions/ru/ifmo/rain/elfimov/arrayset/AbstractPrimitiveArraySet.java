@@ -0,0 +1,257 @@
+package ru.ifmo.rain.elfimov.arrayset;
+
+import java.util.*;
+
+/**
+ * Base of immutable sets over a range of a sorted primitive array without duplicates.
+ * <br>
+ * Positions are found by binary search over the range in ascending order, descending sets
+ * are views over the same range with swapped directions. Views never copy the array.
+ *
+ * @param <E> boxed type of elements.
+ */
+@SuppressWarnings({"WeakerAccess", "unused", "unchecked"})
+abstract class AbstractPrimitiveArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+    final int from;
+    final int to;
+    final boolean descending;
+
+    AbstractPrimitiveArraySet(int from, int to, boolean descending) {
+        this.from = from;
+        this.to = to;
+        this.descending = descending;
+    }
+
+    /**
+     * Search <strong>element</strong> in the range as {@link Arrays#binarySearch} does.
+     *
+     * @param element a boxed element.
+     * @return position of the element or <strong>-(insertion point) - 1</strong>.
+     */
+    abstract int search(Object element);
+
+    abstract E get(int position);
+
+    abstract AbstractPrimitiveArraySet<E> view(int from, int to, boolean descending);
+
+    private static int ascendingLower(int found) {
+        return found >= 0 ? found - 1 : -found - 2;
+    }
+
+    private static int ascendingFloor(int found) {
+        return found >= 0 ? found : -found - 2;
+    }
+
+    private static int ascendingCeiling(int found) {
+        return found >= 0 ? found : -found - 1;
+    }
+
+    private static int ascendingHigher(int found) {
+        return found >= 0 ? found + 1 : -found - 1;
+    }
+
+    final int lowerPosition(int found) {
+        return descending ? ascendingHigher(found) : ascendingLower(found);
+    }
+
+    final int floorPosition(int found) {
+        return descending ? ascendingCeiling(found) : ascendingFloor(found);
+    }
+
+    final int ceilingPosition(int found) {
+        return descending ? ascendingFloor(found) : ascendingCeiling(found);
+    }
+
+    final int higherPosition(int found) {
+        return descending ? ascendingLower(found) : ascendingHigher(found);
+    }
+
+    final boolean isInRange(int position) {
+        return from <= position && position < to;
+    }
+
+    final int firstPosition() {
+        if (from == to) {
+            throw new NoSuchElementException("Cannot do 'first' from an empty set");
+        }
+
+        return descending ? to - 1 : from;
+    }
+
+    final int lastPosition() {
+        if (from == to) {
+            throw new NoSuchElementException("Cannot do 'last' from an empty set");
+        }
+
+        return descending ? from : to - 1;
+    }
+
+    private static int startPosition(int found, boolean inclusive) {
+        return inclusive ? ascendingCeiling(found) : ascendingHigher(found);
+    }
+
+    private static int endPosition(int found, boolean inclusive) {
+        return (inclusive ? ascendingFloor(found) : ascendingLower(found)) + 1;
+    }
+
+    /**
+     * Get view of elements between two elements, found by {@link #search}.
+     *
+     * @param order comparison of <strong>fromElement</strong> with <strong>toElement</strong> in ascending order.
+     */
+    final AbstractPrimitiveArraySet<E> subSetView(int fromFound, boolean fromInclusive,
+                                                  int toFound, boolean toInclusive, int order) {
+        if (descending ? order < 0 : order > 0) {
+            throw new IllegalArgumentException("'fromElement' is greater than 'toElement'");
+        }
+
+        int start = descending ? startPosition(toFound, toInclusive) : startPosition(fromFound, fromInclusive);
+        int end = descending ? endPosition(fromFound, fromInclusive) : endPosition(toFound, toInclusive);
+
+        return view(start, Math.max(start, end), descending);
+    }
+
+    final AbstractPrimitiveArraySet<E> headSetView(int found, boolean inclusive) {
+        if (descending) {
+            return view(startPosition(found, inclusive), to, true);
+        }
+
+        return view(from, endPosition(found, inclusive), false);
+    }
+
+    final AbstractPrimitiveArraySet<E> tailSetView(int found, boolean inclusive) {
+        if (descending) {
+            return view(from, endPosition(found, inclusive), true);
+        }
+
+        return view(startPosition(found, inclusive), to, false);
+    }
+
+    private E returnElement(int position) {
+        return isInRange(position) ? get(position) : null;
+    }
+
+    @Override
+    public E lower(E e) {
+        return returnElement(lowerPosition(search(e)));
+    }
+
+    @Override
+    public E floor(E e) {
+        return returnElement(floorPosition(search(e)));
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return returnElement(ceilingPosition(search(e)));
+    }
+
+    @Override
+    public E higher(E e) {
+        return returnElement(higherPosition(search(e)));
+    }
+
+    @Override
+    public E pollFirst() {
+        throw new UnsupportedOperationException("Function 'pollFirst' is unsupported because of the set is unmodified");
+    }
+
+    @Override
+    public E pollLast() {
+        throw new UnsupportedOperationException("Function 'pollLast' is unsupported because of the set is unmodified");
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            private int position = descending ? to - 1 : from;
+
+            @Override
+            public boolean hasNext() {
+                return isInRange(position);
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                E element = get(position);
+                position += descending ? -1 : 1;
+                return element;
+            }
+        };
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return view(from, to, !descending);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        return subSetView(search(fromElement), fromInclusive, search(toElement), toInclusive,
+                ((Comparable<E>) fromElement).compareTo(toElement));
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return headSetView(search(toElement), inclusive);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return tailSetView(search(fromElement), inclusive);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return descending ? Collections.reverseOrder() : null;
+    }
+
+    @Override
+    public E first() {
+        return get(firstPosition());
+    }
+
+    @Override
+    public E last() {
+        return get(lastPosition());
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return search(o) >= 0;
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Cannot do 'clear' for unmodified set");
+    }
+}
@@ -6,47 +6,82 @@ import java.util.*;
 public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     private final List<E> array;
     private final Comparator<? super E> comparator;
+    private final EytzingerLayout<E> layout;
+    private final int layoutOffset;
 
     public ArraySet() {
         array = new ArrayList<>();
         comparator = null;
+        layout = null;
+        layoutOffset = 0;
     }
 
     private ArraySet(List<E> list, Comparator<? super E> comparator) {
+        this(list, comparator, null, 0);
+    }
+
+    private ArraySet(List<E> list, Comparator<? super E> comparator, EytzingerLayout<E> layout, int layoutOffset) {
         array = list;
         this.comparator = comparator;
+        this.layout = layout;
+        this.layoutOffset = layoutOffset;
     }
 
     public ArraySet(Collection<? extends E> collection) {
-        comparator = null;
-
-        if (isSortedCollection(collection)) {
-            array = getSortedList(collection);
-        } else {
-            array = new ArrayList<>(new TreeSet<E>(collection));
-        }
+        this(collection, null, false);
     }
 
     public ArraySet(Comparator<? super E> comparator) {
         array = new ArrayList<>();
         this.comparator = comparator;
+        layout = null;
+        layoutOffset = 0;
     }
 
     public ArraySet(Collection<? extends E> collection, Comparator<? super E> comparator) {
+        this(collection, comparator, false);
+    }
+
+    /**
+     * Creating a new {@link ArraySet} instance, optionally read-optimized.
+     * <br>
+     * A read-optimized set keeps a second copy of elements in {@link EytzingerLayout}, which is searched by
+     * {@link #contains} and navigation methods of the set and its ascending subsets instead of the sorted list.
+     * It pays off for sets of about a million elements and more, iteration still goes over the sorted list.
+     *
+     * @param collection elements of the set.
+     * @param comparator comparator of elements or <strong>null</strong> for natural ordering.
+     * @param readOptimized whether to keep the Eytzinger layout.
+     */
+    public ArraySet(Collection<? extends E> collection, Comparator<? super E> comparator, boolean readOptimized) {
         this.comparator = comparator;
+        layoutOffset = 0;
+        array = getSortedList(collection);
+        layout = readOptimized ? new EytzingerLayout<>(array, comparator) : null;
+    }
 
-        if (isSortedCollection(collection)) {
-            array = getSortedList(collection);
-        } else {
-            Set<E> set = new TreeSet<>(comparator);
-            set.addAll(collection);
+    private int search(E element) {
+        if (layout == null) {
+            return Collections.binarySearch(array, element, comparator);
+        }
 
-            array = new ArrayList<>(set);
+        // Subsets share the layout of the whole set, their list starts at layoutOffset in it.
+        int position = layout.getPosition(layout.lowerBound(element)) - layoutOffset;
+        position = Math.min(Math.max(position, 0), array.size());
+
+        if (position < array.size() && compare(array.get(position), element) == 0) {
+            return position;
         }
+
+        return -(position + 1);
+    }
+
+    private boolean hasWholeLayout() {
+        return layout != null && array.size() == layout.size();
     }
 
     private int binSearch(E element, boolean includingElement, ShiftSide side) {
-        int position = Collections.binarySearch(array, element, comparator);
+        int position = search(element);
 
         if (position < 0) {
             position = -(position + 1);
@@ -86,6 +121,10 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
 
     @Override
     public E floor(E e) {
+        if (hasWholeLayout()) {
+            return layout.floor(e);
+        }
+
         return returnElement(floorPosition(e));
     }
 
@@ -95,6 +134,10 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
 
     @Override
     public E ceiling(E e) {
+        if (hasWholeLayout()) {
+            return layout.ceiling(e);
+        }
+
         return returnElement(ceilingPosition(e));
     }
 
@@ -124,7 +167,7 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
 
     @Override
     public NavigableSet<E> descendingSet() {
-        return new ArraySet<>(new ReversibleList<>(array), Collections.reverseOrder(comparator));
+        return new ArraySet<>(ReversedList.reverse(array), Collections.reverseOrder(comparator));
     }
 
     @Override
@@ -145,21 +188,22 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
             return new ArraySet<>(comparator);
         }
 
-        return new ArraySet<>(array.subList(fromPosition, toPosition + 1), comparator);
+        return new ArraySet<>(array.subList(fromPosition, toPosition + 1), comparator,
+                layout, layoutOffset + fromPosition);
     }
 
     @Override
     public NavigableSet<E> headSet(E toElement, boolean inclusive) {
         int position = inclusive ? floorPosition(toElement) : lowerPosition(toElement);
 
-        return new ArraySet<>(array.subList(0, position + 1), comparator);
+        return new ArraySet<>(array.subList(0, position + 1), comparator, layout, layoutOffset);
     }
 
     @Override
     public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
         int position = (inclusive ? ceilingPosition(fromElement) : higherPosition(fromElement));
 
-        return new ArraySet<>(array.subList(position, array.size()), comparator);
+        return new ArraySet<>(array.subList(position, array.size()), comparator, layout, layoutOffset + position);
     }
 
     @Override
@@ -207,7 +251,11 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
 
     @Override
     public boolean contains(Object o) {
-        int position = Collections.binarySearch(array, (E) o, comparator);
+        if (hasWholeLayout()) {
+            return layout.contains((E) o);
+        }
+
+        int position = search((E) o);
 
         return position >= 0;
     }
@@ -217,42 +265,37 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         throw new UnsupportedOperationException("Cannot do 'clear' for unmodified set");
     }
 
-    private static class ReversibleList<E> extends ArrayList<E> {
-        private boolean reversed;
+    /**
+     * A reversed view of a list, which never copies it.
+     */
+    private static class ReversedList<E> extends AbstractList<E> implements RandomAccess {
+        private final List<E> list;
 
-        ReversibleList(Collection<? extends E> collection) {
-            super(collection);
+        ReversedList(List<E> list) {
+            this.list = list;
+        }
 
-            if (collection instanceof ArraySet.ReversibleList) {
-                reversed = !((ReversibleList<? extends E>) collection).isReversed();
-            } else {
-                reversed = true;
+        static <E> List<E> reverse(List<E> list) {
+            if (list instanceof ReversedList) {
+                return ((ReversedList<E>) list).list;
             }
+
+            return new ReversedList<>(list);
         }
 
         @Override
         public E get(int index) {
-            if (reversed) {
-                return super.get(size() - index - 1);
-            } else {
-                return super.get(index);
-            }
+            return list.get(list.size() - index - 1);
         }
 
         @Override
-        public Iterator<E> iterator() {
-            if (reversed) {
-                ArrayList<E> reversedList = new ArrayList<>(this);
-                Collections.reverse(reversedList);
-
-                return reversedList.iterator();
-            } else {
-                return super.iterator();
-            }
+        public int size() {
+            return list.size();
         }
 
-        public boolean isReversed() {
-            return reversed;
+        @Override
+        public List<E> subList(int fromIndex, int toIndex) {
+            return new ReversedList<>(list.subList(list.size() - toIndex, list.size() - fromIndex));
         }
     }
 
@@ -278,28 +321,45 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         return comparator.compare(firstElement, secondElement);
     }
 
-    private boolean isSortedCollection(Collection<? extends E> collection) {
-        List <E> listCollection = new ArrayList<>(collection);
+    private boolean isSameOrder(Collection<? extends E> collection) {
+        return collection instanceof SortedSet
+                && Objects.equals(((SortedSet<? extends E>) collection).comparator(), comparator);
+    }
+
+    /**
+     * Get sorted list of distinct elements of <strong>collection</strong> in one copy of it.
+     * <br>
+     * A sorted set of the same order is taken as is, sorted input is checked by one pass,
+     * other input is sorted in place by {@link Arrays#parallelSort}. Of equal elements the first one is kept.
+     */
+    private List<E> getSortedList(Collection<? extends E> collection) {
+        E[] elements = (E[]) collection.toArray();
 
-        for (int i = 1; i < listCollection.size(); i++) {
-            if (compare(listCollection.get(i - 1), listCollection.get(i)) > 0) {
-                return false;
+        if (isSameOrder(collection)) {
+            return Arrays.asList(elements);
+        }
+
+        if (!isSorted(elements)) {
+            Arrays.parallelSort(elements, comparator);
+        }
+
+        int size = 0;
+        for (int i = 0; i < elements.length; i++) {
+            if (i == 0 || compare(elements[i], elements[size - 1]) != 0) {
+                elements[size++] = elements[i];
             }
         }
 
-        return true;
+        return Arrays.asList(size == elements.length ? elements : Arrays.copyOf(elements, size));
     }
 
-    private List<E> getSortedList(Collection <? extends E> sortedCollection) {
-        List <E> sortedList = new ArrayList<>();
-        List <E> originList = new ArrayList<>(sortedCollection);
-
-        for (int i = 0; i < originList.size(); i++) {
-            if ((i > 0 && compare(originList.get(i), originList.get(i - 1)) != 0) || i == 0) {
-                sortedList.add(originList.get(i));
+    private boolean isSorted(E[] elements) {
+        for (int i = 1; i < elements.length; i++) {
+            if (compare(elements[i - 1], elements[i]) > 0) {
+                return false;
             }
         }
 
-        return  sortedList;
+        return true;
     }
 }
@@ -0,0 +1,181 @@
+package ru.ifmo.rain.elfimov.arrayset;
+
+import java.util.*;
+
+/**
+ * An immutable {@link NavigableSet} of <strong>double</strong> keys, stored in a sorted <strong>double[]</strong>.
+ * <br>
+ * Besides boxed methods of {@link NavigableSet}, primitive overloads do not box:
+ * navigation methods take the value to return when there is no such element.
+ * <br>
+ * Elements are ordered by {@link Double#compare}, so <strong>-0.0</strong> is lower than <strong>0.0</strong>
+ * and <strong>NaN</strong> is greater than any other element.
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class DoubleArraySet extends AbstractPrimitiveArraySet<Double> {
+    private final double[] array;
+
+    public DoubleArraySet() {
+        this(new double[0], 0, 0, false);
+    }
+
+    public DoubleArraySet(double... elements) {
+        this(sortedDistinct(elements.clone()), false);
+    }
+
+    public DoubleArraySet(Collection<? extends Double> collection) {
+        this(sortedDistinct(collection.stream().mapToDouble(Double::doubleValue).toArray()), false);
+    }
+
+    private DoubleArraySet(double[] array, boolean descending) {
+        this(array, 0, array.length, descending);
+    }
+
+    private DoubleArraySet(double[] array, int from, int to, boolean descending) {
+        super(from, to, descending);
+        this.array = array;
+    }
+
+    private static double[] sortedDistinct(double[] elements) {
+        int size = 0;
+
+        if (!isSortedDistinct(elements)) {
+            Arrays.sort(elements);
+        }
+
+        for (int i = 0; i < elements.length; i++) {
+            if (i == 0 || Double.compare(elements[i], elements[size - 1]) != 0) {
+                elements[size++] = elements[i];
+            }
+        }
+
+        return size == elements.length ? elements : Arrays.copyOf(elements, size);
+    }
+
+    private static boolean isSortedDistinct(double[] elements) {
+        for (int i = 1; i < elements.length; i++) {
+            if (Double.compare(elements[i - 1], elements[i]) >= 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int search(double element) {
+        return Arrays.binarySearch(array, from, to, element);
+    }
+
+    @Override
+    int search(Object element) {
+        return search((double) (Double) element);
+    }
+
+    @Override
+    Double get(int position) {
+        return array[position];
+    }
+
+    @Override
+    DoubleArraySet view(int from, int to, boolean descending) {
+        return new DoubleArraySet(array, from, to, descending);
+    }
+
+    public boolean contains(double element) {
+        return search(element) >= 0;
+    }
+
+    public double lower(double element, double absent) {
+        int position = lowerPosition(search(element));
+        return isInRange(position) ? array[position] : absent;
+    }
+
+    public double floor(double element, double absent) {
+        int position = floorPosition(search(element));
+        return isInRange(position) ? array[position] : absent;
+    }
+
+    public double ceiling(double element, double absent) {
+        int position = ceilingPosition(search(element));
+        return isInRange(position) ? array[position] : absent;
+    }
+
+    public double higher(double element, double absent) {
+        int position = higherPosition(search(element));
+        return isInRange(position) ? array[position] : absent;
+    }
+
+    public double firstDouble() {
+        return array[firstPosition()];
+    }
+
+    public double lastDouble() {
+        return array[lastPosition()];
+    }
+
+    public DoubleArraySet subSet(double fromElement, boolean fromInclusive, double toElement, boolean toInclusive) {
+        return (DoubleArraySet) subSetView(search(fromElement), fromInclusive, search(toElement), toInclusive,
+                Double.compare(fromElement, toElement));
+    }
+
+    public DoubleArraySet headSet(double toElement, boolean inclusive) {
+        return (DoubleArraySet) headSetView(search(toElement), inclusive);
+    }
+
+    public DoubleArraySet tailSet(double fromElement, boolean inclusive) {
+        return (DoubleArraySet) tailSetView(search(fromElement), inclusive);
+    }
+
+    @Override
+    public DoubleArraySet descendingSet() {
+        return view(from, to, !descending);
+    }
+
+    @Override
+    public PrimitiveIterator.OfDouble iterator() {
+        return new PrimitiveIterator.OfDouble() {
+            private int position = descending ? to - 1 : from;
+
+            @Override
+            public boolean hasNext() {
+                return isInRange(position);
+            }
+
+            @Override
+            public double nextDouble() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                double element = array[position];
+                position += descending ? -1 : 1;
+                return element;
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+
+        for (int i = from; i < to; i++) {
+            hash += Double.hashCode(array[i]);
+        }
+
+        return hash;
+    }
+
+    public double[] toDoubleArray() {
+        double[] result = Arrays.copyOfRange(array, from, to);
+
+        if (descending) {
+            for (int left = 0, right = result.length - 1; left < right; left++, right--) {
+                double element = result[left];
+                result[left] = result[right];
+                result[right] = element;
+            }
+        }
+
+        return result;
+    }
+}
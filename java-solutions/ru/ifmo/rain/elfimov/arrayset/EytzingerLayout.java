@@ -0,0 +1,156 @@
+package ru.ifmo.rain.elfimov.arrayset;
+
+import java.util.*;
+
+/**
+ * A copy of a sorted list in Eytzinger order: breadth-first order of the implicit binary search tree over it.
+ * <br>
+ * Children of node <strong>k</strong> are nodes <strong>2k</strong> and <strong>2k + 1</strong>, so the first levels
+ * of the tree, visited by every search, share a few cache lines, and all descendants of a node some levels below
+ * lie in one cache line. A processor speculating down a wrong branch of the search still loads the line
+ * of the right one, which takes place of explicit prefetching.
+ *
+ * @param <E> type of elements.
+ */
+@SuppressWarnings({"WeakerAccess", "unused", "unchecked"})
+final class EytzingerLayout<E> {
+    /**
+     * Elements in Eytzinger order from index <strong>1</strong>, index <strong>0</strong> stands for no element.
+     */
+    private final Object[] elements;
+
+    /**
+     * Positions of elements in the sorted list.
+     */
+    private final int[] positions;
+
+    private final Comparator<? super E> comparator;
+
+    /**
+     * Creating a new {@link EytzingerLayout} instance.
+     *
+     * @param sorted a sorted list without duplicates with fast random access.
+     * @param comparator comparator of the list or <strong>null</strong> for natural ordering.
+     */
+    EytzingerLayout(List<E> sorted, Comparator<? super E> comparator) {
+        elements = new Object[sorted.size() + 1];
+        positions = new int[sorted.size() + 1];
+        this.comparator = comparator == null ? (Comparator<? super E>) Comparator.naturalOrder() : comparator;
+
+        fill(sorted, 0, 1);
+    }
+
+    private int fill(List<E> sorted, int position, int node) {
+        if (node < elements.length) {
+            position = fill(sorted, position, 2 * node);
+
+            elements[node] = sorted.get(position);
+            positions[node] = position;
+
+            position = fill(sorted, position + 1, 2 * node + 1);
+        }
+
+        return position;
+    }
+
+    /**
+     * Go down the tree comparing nodes with <strong>element</strong> till a leaf.
+     * <br>
+     * Bits of the returned index after the leading one are turns of the path, a one bit for each right turn
+     * to elements less than <strong>element</strong>.
+     *
+     * @param element an element to search.
+     * @return index of the leaf below the tree.
+     */
+    private int descend(E element) {
+        int node = 1;
+
+        // A branch, not a conditional move: the next load must not wait for the comparison.
+        while (node < elements.length) {
+            if (comparator.compare((E) elements[node], element) < 0) {
+                node = 2 * node + 1;
+            } else {
+                node = 2 * node;
+            }
+        }
+
+        return node;
+    }
+
+    /**
+     * The first element not less than the searched one is the node of the last left turn.
+     */
+    private static int lastLeftTurn(int path) {
+        return path >>> (Integer.numberOfTrailingZeros(~path) + 1);
+    }
+
+    /**
+     * The last element less than the searched one is the node of the last right turn.
+     */
+    private static int lastRightTurn(int path) {
+        return path >>> (Integer.numberOfTrailingZeros(path) + 1);
+    }
+
+    /**
+     * Find node of the first element, which is not less than <strong>element</strong>.
+     *
+     * @param element an element to search.
+     * @return node of the element or <strong>0</strong> if all elements are less.
+     */
+    int lowerBound(E element) {
+        return lastLeftTurn(descend(element));
+    }
+
+    /**
+     * Check whether the list contains <strong>element</strong> without touching the list itself.
+     *
+     * @param element an element to search.
+     * @return <strong>true</strong> if there is an equal element.
+     */
+    boolean contains(E element) {
+        int node = lowerBound(element);
+
+        return node != 0 && comparator.compare((E) elements[node], element) == 0;
+    }
+
+    /**
+     * Find the greatest element, which is not greater than <strong>element</strong>, by one pass down the tree.
+     *
+     * @param element an element to search.
+     * @return found element or <strong>null</strong>.
+     */
+    E floor(E element) {
+        int path = descend(element);
+        int node = lastLeftTurn(path);
+
+        if (node != 0 && comparator.compare((E) elements[node], element) == 0) {
+            return (E) elements[node];
+        }
+
+        return (E) elements[lastRightTurn(path)];
+    }
+
+    /**
+     * Find the least element, which is not less than <strong>element</strong>.
+     *
+     * @param element an element to search.
+     * @return found element or <strong>null</strong>.
+     */
+    E ceiling(E element) {
+        return (E) elements[lowerBound(element)];
+    }
+
+    /**
+     * Get position of <strong>node</strong> in the sorted list.
+     *
+     * @param node a node found by {@link #lowerBound}.
+     * @return position of the element or size of the list for node <strong>0</strong>.
+     */
+    int getPosition(int node) {
+        return node == 0 ? positions.length - 1 : positions[node];
+    }
+
+    int size() {
+        return positions.length - 1;
+    }
+}
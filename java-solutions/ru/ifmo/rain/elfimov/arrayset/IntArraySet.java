@@ -0,0 +1,178 @@
+package ru.ifmo.rain.elfimov.arrayset;
+
+import java.util.*;
+
+/**
+ * An immutable {@link NavigableSet} of <strong>int</strong> keys, stored in a sorted <strong>int[]</strong>.
+ * <br>
+ * Besides boxed methods of {@link NavigableSet}, primitive overloads do not box:
+ * navigation methods take the value to return when there is no such element.
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class IntArraySet extends AbstractPrimitiveArraySet<Integer> {
+    private final int[] array;
+
+    public IntArraySet() {
+        this(new int[0], 0, 0, false);
+    }
+
+    public IntArraySet(int... elements) {
+        this(sortedDistinct(elements.clone()), false);
+    }
+
+    public IntArraySet(Collection<? extends Integer> collection) {
+        this(sortedDistinct(collection.stream().mapToInt(Integer::intValue).toArray()), false);
+    }
+
+    private IntArraySet(int[] array, boolean descending) {
+        this(array, 0, array.length, descending);
+    }
+
+    private IntArraySet(int[] array, int from, int to, boolean descending) {
+        super(from, to, descending);
+        this.array = array;
+    }
+
+    private static int[] sortedDistinct(int[] elements) {
+        int size = 0;
+
+        if (!isSortedDistinct(elements)) {
+            Arrays.sort(elements);
+        }
+
+        for (int i = 0; i < elements.length; i++) {
+            if (i == 0 || elements[i] != elements[size - 1]) {
+                elements[size++] = elements[i];
+            }
+        }
+
+        return size == elements.length ? elements : Arrays.copyOf(elements, size);
+    }
+
+    private static boolean isSortedDistinct(int[] elements) {
+        for (int i = 1; i < elements.length; i++) {
+            if (elements[i - 1] >= elements[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int search(int element) {
+        return Arrays.binarySearch(array, from, to, element);
+    }
+
+    @Override
+    int search(Object element) {
+        return search((int) (Integer) element);
+    }
+
+    @Override
+    Integer get(int position) {
+        return array[position];
+    }
+
+    @Override
+    IntArraySet view(int from, int to, boolean descending) {
+        return new IntArraySet(array, from, to, descending);
+    }
+
+    public boolean contains(int element) {
+        return search(element) >= 0;
+    }
+
+    public int lower(int element, int absent) {
+        int position = lowerPosition(search(element));
+        return isInRange(position) ? array[position] : absent;
+    }
+
+    public int floor(int element, int absent) {
+        int position = floorPosition(search(element));
+        return isInRange(position) ? array[position] : absent;
+    }
+
+    public int ceiling(int element, int absent) {
+        int position = ceilingPosition(search(element));
+        return isInRange(position) ? array[position] : absent;
+    }
+
+    public int higher(int element, int absent) {
+        int position = higherPosition(search(element));
+        return isInRange(position) ? array[position] : absent;
+    }
+
+    public int firstInt() {
+        return array[firstPosition()];
+    }
+
+    public int lastInt() {
+        return array[lastPosition()];
+    }
+
+    public IntArraySet subSet(int fromElement, boolean fromInclusive, int toElement, boolean toInclusive) {
+        return (IntArraySet) subSetView(search(fromElement), fromInclusive, search(toElement), toInclusive,
+                Integer.compare(fromElement, toElement));
+    }
+
+    public IntArraySet headSet(int toElement, boolean inclusive) {
+        return (IntArraySet) headSetView(search(toElement), inclusive);
+    }
+
+    public IntArraySet tailSet(int fromElement, boolean inclusive) {
+        return (IntArraySet) tailSetView(search(fromElement), inclusive);
+    }
+
+    @Override
+    public IntArraySet descendingSet() {
+        return view(from, to, !descending);
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int position = descending ? to - 1 : from;
+
+            @Override
+            public boolean hasNext() {
+                return isInRange(position);
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                int element = array[position];
+                position += descending ? -1 : 1;
+                return element;
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+
+        for (int i = from; i < to; i++) {
+            hash += Integer.hashCode(array[i]);
+        }
+
+        return hash;
+    }
+
+    public int[] toIntArray() {
+        int[] result = Arrays.copyOfRange(array, from, to);
+
+        if (descending) {
+            for (int left = 0, right = result.length - 1; left < right; left++, right--) {
+                int element = result[left];
+                result[left] = result[right];
+                result[right] = element;
+            }
+        }
+
+        return result;
+    }
+}
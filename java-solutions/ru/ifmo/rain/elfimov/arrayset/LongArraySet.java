@@ -0,0 +1,178 @@
+package ru.ifmo.rain.elfimov.arrayset;
+
+import java.util.*;
+
+/**
+ * An immutable {@link NavigableSet} of <strong>long</strong> keys, stored in a sorted <strong>long[]</strong>.
+ * <br>
+ * Besides boxed methods of {@link NavigableSet}, primitive overloads do not box:
+ * navigation methods take the value to return when there is no such element.
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class LongArraySet extends AbstractPrimitiveArraySet<Long> {
+    private final long[] array;
+
+    public LongArraySet() {
+        this(new long[0], 0, 0, false);
+    }
+
+    public LongArraySet(long... elements) {
+        this(sortedDistinct(elements.clone()), false);
+    }
+
+    public LongArraySet(Collection<? extends Long> collection) {
+        this(sortedDistinct(collection.stream().mapToLong(Long::longValue).toArray()), false);
+    }
+
+    private LongArraySet(long[] array, boolean descending) {
+        this(array, 0, array.length, descending);
+    }
+
+    private LongArraySet(long[] array, int from, int to, boolean descending) {
+        super(from, to, descending);
+        this.array = array;
+    }
+
+    private static long[] sortedDistinct(long[] elements) {
+        int size = 0;
+
+        if (!isSortedDistinct(elements)) {
+            Arrays.sort(elements);
+        }
+
+        for (int i = 0; i < elements.length; i++) {
+            if (i == 0 || elements[i] != elements[size - 1]) {
+                elements[size++] = elements[i];
+            }
+        }
+
+        return size == elements.length ? elements : Arrays.copyOf(elements, size);
+    }
+
+    private static boolean isSortedDistinct(long[] elements) {
+        for (int i = 1; i < elements.length; i++) {
+            if (elements[i - 1] >= elements[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int search(long element) {
+        return Arrays.binarySearch(array, from, to, element);
+    }
+
+    @Override
+    int search(Object element) {
+        return search((long) (Long) element);
+    }
+
+    @Override
+    Long get(int position) {
+        return array[position];
+    }
+
+    @Override
+    LongArraySet view(int from, int to, boolean descending) {
+        return new LongArraySet(array, from, to, descending);
+    }
+
+    public boolean contains(long element) {
+        return search(element) >= 0;
+    }
+
+    public long lower(long element, long absent) {
+        int position = lowerPosition(search(element));
+        return isInRange(position) ? array[position] : absent;
+    }
+
+    public long floor(long element, long absent) {
+        int position = floorPosition(search(element));
+        return isInRange(position) ? array[position] : absent;
+    }
+
+    public long ceiling(long element, long absent) {
+        int position = ceilingPosition(search(element));
+        return isInRange(position) ? array[position] : absent;
+    }
+
+    public long higher(long element, long absent) {
+        int position = higherPosition(search(element));
+        return isInRange(position) ? array[position] : absent;
+    }
+
+    public long firstLong() {
+        return array[firstPosition()];
+    }
+
+    public long lastLong() {
+        return array[lastPosition()];
+    }
+
+    public LongArraySet subSet(long fromElement, boolean fromInclusive, long toElement, boolean toInclusive) {
+        return (LongArraySet) subSetView(search(fromElement), fromInclusive, search(toElement), toInclusive,
+                Long.compare(fromElement, toElement));
+    }
+
+    public LongArraySet headSet(long toElement, boolean inclusive) {
+        return (LongArraySet) headSetView(search(toElement), inclusive);
+    }
+
+    public LongArraySet tailSet(long fromElement, boolean inclusive) {
+        return (LongArraySet) tailSetView(search(fromElement), inclusive);
+    }
+
+    @Override
+    public LongArraySet descendingSet() {
+        return view(from, to, !descending);
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int position = descending ? to - 1 : from;
+
+            @Override
+            public boolean hasNext() {
+                return isInRange(position);
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                long element = array[position];
+                position += descending ? -1 : 1;
+                return element;
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+
+        for (int i = from; i < to; i++) {
+            hash += Long.hashCode(array[i]);
+        }
+
+        return hash;
+    }
+
+    public long[] toLongArray() {
+        long[] result = Arrays.copyOfRange(array, from, to);
+
+        if (descending) {
+            for (int left = 0, right = result.length - 1; left < right; left++, right--) {
+                long element = result[left];
+                result[left] = result[right];
+                result[right] = element;
+            }
+        }
+
+        return result;
+    }
+}
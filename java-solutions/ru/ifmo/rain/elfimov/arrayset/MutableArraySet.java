@@ -0,0 +1,596 @@
+package ru.ifmo.rain.elfimov.arrayset;
+
+import java.util.*;
+
+/**
+ * A mutable {@link NavigableSet}, stored in a large sorted array and a small sorted buffer of changes.
+ * <br>
+ * Added elements, which are not in the array, and removed elements of the array are kept in the buffer.
+ * Reads merge the array with the buffer on the fly, so scans step over the array. Once the buffer grows
+ * past {@link #MIN_BUFFER_SIZE} changes and <strong>1 / {@link #BUFFER_FRACTION}</strong> of the array,
+ * it is merged into a new array in one pass, so an update takes amortized <strong>O(log n)</strong> time.
+ * <br>
+ * Subsets and descending sets are views backed by the set. Iterators are weakly consistent: they never throw
+ * {@link ConcurrentModificationException} and go on after the last returned element. The set is not thread-safe.
+ *
+ * @param <E> type of elements.
+ */
+@SuppressWarnings({"WeakerAccess", "unused", "unchecked"})
+public class MutableArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+    private static final int MIN_BUFFER_SIZE = 64;
+    private static final int BUFFER_FRACTION = 8;
+
+    private final Storage<E> storage;
+    private final boolean fromStart;
+    private final E low;
+    private final boolean lowInclusive;
+    private final boolean toEnd;
+    private final E high;
+    private final boolean highInclusive;
+    private final boolean descending;
+
+    public MutableArraySet() {
+        this((Comparator<? super E>) null);
+    }
+
+    public MutableArraySet(Comparator<? super E> comparator) {
+        this(Collections.emptyList(), comparator);
+    }
+
+    public MutableArraySet(Collection<? extends E> collection) {
+        this(collection, null);
+    }
+
+    public MutableArraySet(Collection<? extends E> collection, Comparator<? super E> comparator) {
+        this(new Storage<>((E[]) new ArraySet<E>(collection, comparator).toArray(), comparator),
+                true, null, false, true, null, false, false);
+    }
+
+    private MutableArraySet(Storage<E> storage, boolean fromStart, E low, boolean lowInclusive,
+                            boolean toEnd, E high, boolean highInclusive, boolean descending) {
+        this.storage = storage;
+        this.fromStart = fromStart;
+        this.low = low;
+        this.lowInclusive = lowInclusive;
+        this.toEnd = toEnd;
+        this.high = high;
+        this.highInclusive = highInclusive;
+        this.descending = descending;
+    }
+
+    /**
+     * Sorted array of elements and sorted buffer of its changes, shared by the set and its views.
+     */
+    private static final class Storage<E> {
+        final Comparator<? super E> comparator;
+        final Comparator<? super E> order;
+
+        /**
+         * Changes of the array: <strong>true</strong> for an added element, which is not in the array,
+         * <strong>false</strong> for a removed element of the array.
+         */
+        final NavigableMap<E, Boolean> buffer;
+
+        E[] array;
+        int size;
+
+        /**
+         * Number of modifications, iterators search their position again when it changes.
+         */
+        int version;
+
+        Storage(E[] array, Comparator<? super E> comparator) {
+            this.comparator = comparator;
+            this.order = comparator == null ? (Comparator<? super E>) Comparator.naturalOrder() : comparator;
+            this.buffer = new TreeMap<>(comparator);
+            this.array = array;
+            this.size = array.length;
+        }
+
+        int search(E element) {
+            return Arrays.binarySearch(array, element, order);
+        }
+
+        boolean contains(E element) {
+            Boolean change = buffer.get(element);
+
+            return change == null ? search(element) >= 0 : change;
+        }
+
+        boolean add(E element) {
+            Boolean change = buffer.get(element);
+
+            if (change == null) {
+                if (search(element) >= 0) {
+                    return false;
+                }
+                buffer.put(element, true);
+            } else if (change) {
+                return false;
+            } else {
+                buffer.remove(element);
+            }
+
+            size++;
+            version++;
+            mergeIfFull();
+
+            return true;
+        }
+
+        boolean remove(E element) {
+            Boolean change = buffer.get(element);
+
+            if (change == null) {
+                if (search(element) < 0) {
+                    return false;
+                }
+                buffer.put(element, false);
+            } else if (!change) {
+                return false;
+            } else {
+                buffer.remove(element);
+            }
+
+            size--;
+            version++;
+            mergeIfFull();
+
+            return true;
+        }
+
+        void clear() {
+            array = (E[]) new Object[0];
+            buffer.clear();
+            size = 0;
+            version++;
+        }
+
+        private void mergeIfFull() {
+            if (buffer.size() > Math.max(MIN_BUFFER_SIZE, array.length / BUFFER_FRACTION)) {
+                merge();
+            }
+        }
+
+        /**
+         * Merge the buffer into a new array, copying runs of unchanged elements between changes at once.
+         */
+        private void merge() {
+            E[] merged = (E[]) new Object[size];
+            int from = 0;
+            int to = 0;
+
+            for (Map.Entry<E, Boolean> change : buffer.entrySet()) {
+                int found = Arrays.binarySearch(array, from, array.length, change.getKey(), order);
+                int end = found >= 0 ? found : -found - 1;
+
+                System.arraycopy(array, from, merged, to, end - from);
+                to += end - from;
+                from = end;
+
+                if (change.getValue()) {
+                    merged[to++] = change.getKey();
+                } else {
+                    from++;
+                }
+            }
+            System.arraycopy(array, from, merged, to, array.length - from);
+
+            array = merged;
+            buffer.clear();
+            version++;
+        }
+    }
+
+    private int compare(E firstElement, E secondElement) {
+        return storage.order.compare(firstElement, secondElement);
+    }
+
+    private boolean isTooLow(E element) {
+        if (fromStart) {
+            return false;
+        }
+
+        int comparison = compare(element, low);
+        return comparison < 0 || (comparison == 0 && !lowInclusive);
+    }
+
+    private boolean isTooHigh(E element) {
+        if (toEnd) {
+            return false;
+        }
+
+        int comparison = compare(element, high);
+        return comparison > 0 || (comparison == 0 && !highInclusive);
+    }
+
+    private boolean isInRange(E element) {
+        return !isTooLow(element) && !isTooHigh(element);
+    }
+
+    private boolean isInClosedRange(E element) {
+        return (fromStart || compare(element, low) >= 0) && (toEnd || compare(element, high) <= 0);
+    }
+
+    /**
+     * A cursor over elements of the range in ascending or descending order, merging the array with the buffer.
+     */
+    private final class Cursor implements Iterator<E> {
+        private final boolean ascending;
+        private final boolean fromKey;
+        private final E key;
+        private final boolean inclusive;
+
+        private E[] array;
+        private int position;
+        private Iterator<Map.Entry<E, Boolean>> changes;
+        private Map.Entry<E, Boolean> change;
+        private int version;
+
+        private E next;
+        private boolean hasNext;
+        private E last;
+        private boolean hasLast;
+        private boolean removable;
+
+        /**
+         * Creating a new {@link Cursor} instance at the start of the range.
+         */
+        Cursor(boolean ascending) {
+            this(ascending, false, null, false);
+        }
+
+        /**
+         * Creating a new {@link Cursor} instance at <strong>key</strong> or the start of the range,
+         * whichever comes later.
+         */
+        Cursor(boolean ascending, boolean fromKey, E key, boolean inclusive) {
+            this.ascending = ascending;
+            this.fromKey = fromKey;
+            this.key = key;
+            this.inclusive = inclusive;
+
+            seek(fromKey, key, inclusive);
+        }
+
+        private void seek(boolean fromKey, E key, boolean inclusive) {
+            boolean beforeRange = fromKey && (ascending ? isTooLow(key) : isTooHigh(key));
+
+            if (!fromKey || beforeRange) {
+                fromKey = !(ascending ? fromStart : toEnd);
+                key = ascending ? low : high;
+                inclusive = ascending ? lowInclusive : highInclusive;
+            }
+
+            array = storage.array;
+            version = storage.version;
+
+            NavigableMap<E, Boolean> buffer = storage.buffer;
+            if (!fromKey) {
+                position = ascending ? 0 : array.length - 1;
+                changes = (ascending ? buffer : buffer.descendingMap()).entrySet().iterator();
+            } else {
+                int found = storage.search(key);
+
+                if (ascending) {
+                    position = found >= 0 ? (inclusive ? found : found + 1) : -found - 1;
+                    changes = buffer.tailMap(key, inclusive).entrySet().iterator();
+                } else {
+                    position = found >= 0 ? (inclusive ? found : found - 1) : -found - 2;
+                    changes = buffer.headMap(key, inclusive).descendingMap().entrySet().iterator();
+                }
+            }
+
+            change = changes.hasNext() ? changes.next() : null;
+            advance();
+        }
+
+        private int compareInOrder(E firstElement, E secondElement) {
+            return ascending ? compare(firstElement, secondElement) : compare(secondElement, firstElement);
+        }
+
+        private void advance() {
+            while (true) {
+                boolean inArray = 0 <= position && position < array.length;
+
+                if (!inArray && change == null) {
+                    hasNext = false;
+                    return;
+                }
+
+                int comparison = !inArray ? 1 : change == null ? -1 : compareInOrder(array[position], change.getKey());
+                E candidate;
+
+                if (comparison < 0) {
+                    candidate = array[position];
+                    position += ascending ? 1 : -1;
+                } else {
+                    boolean added = change.getValue();
+                    candidate = change.getKey();
+                    change = changes.hasNext() ? changes.next() : null;
+
+                    if (comparison == 0) {
+                        // Element of the array is removed.
+                        position += ascending ? 1 : -1;
+                        continue;
+                    }
+                    if (!added) {
+                        continue;
+                    }
+                }
+
+                hasNext = !(ascending ? isTooHigh(candidate) : isTooLow(candidate));
+                next = candidate;
+                return;
+            }
+        }
+
+        private void revalidate() {
+            if (version != storage.version) {
+                if (hasLast) {
+                    seek(true, last, false);
+                } else {
+                    seek(fromKey, key, inclusive);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            revalidate();
+            return hasNext;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            last = next;
+            hasLast = true;
+            removable = true;
+            advance();
+
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (!removable) {
+                throw new IllegalStateException();
+            }
+
+            storage.remove(last);
+            removable = false;
+        }
+
+        E nextOrNull() {
+            return hasNext() ? next() : null;
+        }
+    }
+
+    private E find(boolean ascending, E key, boolean inclusive) {
+        return new Cursor(ascending, true, key, inclusive).nextOrNull();
+    }
+
+    @Override
+    public E lower(E e) {
+        return find(descending, e, false);
+    }
+
+    @Override
+    public E floor(E e) {
+        return find(descending, e, true);
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return find(!descending, e, true);
+    }
+
+    @Override
+    public E higher(E e) {
+        return find(!descending, e, false);
+    }
+
+    private E poll(boolean ascending) {
+        Cursor cursor = new Cursor(ascending);
+
+        if (!cursor.hasNext()) {
+            return null;
+        }
+
+        E element = cursor.next();
+        cursor.remove();
+
+        return element;
+    }
+
+    @Override
+    public E pollFirst() {
+        return poll(!descending);
+    }
+
+    @Override
+    public E pollLast() {
+        return poll(descending);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Cursor(!descending);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new Cursor(descending);
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new MutableArraySet<>(storage, fromStart, low, lowInclusive, toEnd, high, highInclusive, !descending);
+    }
+
+    private void checkInRange(E element, boolean inclusive, String name) {
+        if (!(inclusive ? isInRange(element) : isInClosedRange(element))) {
+            throw new IllegalArgumentException("'" + name + "' is out of range");
+        }
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if ((descending ? compare(toElement, fromElement) : compare(fromElement, toElement)) > 0) {
+            throw new IllegalArgumentException("'fromElement' is greater than 'toElement'");
+        }
+
+        checkInRange(fromElement, fromInclusive, "fromElement");
+        checkInRange(toElement, toInclusive, "toElement");
+
+        if (descending) {
+            return new MutableArraySet<>(storage, false, toElement, toInclusive,
+                    false, fromElement, fromInclusive, true);
+        }
+
+        return new MutableArraySet<>(storage, false, fromElement, fromInclusive, false, toElement, toInclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        checkInRange(toElement, inclusive, "toElement");
+
+        if (descending) {
+            return new MutableArraySet<>(storage, false, toElement, inclusive, toEnd, high, highInclusive, true);
+        }
+
+        return new MutableArraySet<>(storage, fromStart, low, lowInclusive, false, toElement, inclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        checkInRange(fromElement, inclusive, "fromElement");
+
+        if (descending) {
+            return new MutableArraySet<>(storage, fromStart, low, lowInclusive, false, fromElement, inclusive, true);
+        }
+
+        return new MutableArraySet<>(storage, false, fromElement, inclusive, toEnd, high, highInclusive, false);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return descending ? Collections.reverseOrder(storage.comparator) : storage.comparator;
+    }
+
+    @Override
+    public E first() {
+        Cursor cursor = new Cursor(!descending);
+
+        if (!cursor.hasNext()) {
+            throw new NoSuchElementException("Cannot do 'first' from an empty set");
+        }
+
+        return cursor.next();
+    }
+
+    @Override
+    public E last() {
+        Cursor cursor = new Cursor(descending);
+
+        if (!cursor.hasNext()) {
+            throw new NoSuchElementException("Cannot do 'last' from an empty set");
+        }
+
+        return cursor.next();
+    }
+
+    /**
+     * Get number of elements, which is counted over the buffer for views.
+     */
+    @Override
+    public int size() {
+        if (fromStart && toEnd) {
+            return storage.size;
+        }
+
+        int from = 0;
+        int to = storage.array.length;
+        NavigableMap<E, Boolean> changes;
+
+        if (!fromStart) {
+            int found = storage.search(low);
+            from = found >= 0 ? (lowInclusive ? found : found + 1) : -found - 1;
+        }
+        if (!toEnd) {
+            int found = storage.search(high);
+            to = found >= 0 ? (highInclusive ? found + 1 : found) : -found - 1;
+        }
+
+        if (fromStart) {
+            changes = storage.buffer.headMap(high, highInclusive);
+        } else if (toEnd) {
+            changes = storage.buffer.tailMap(low, lowInclusive);
+        } else {
+            changes = storage.buffer.subMap(low, lowInclusive, high, highInclusive);
+        }
+
+        int size = Math.max(to - from, 0);
+        for (boolean added : changes.values()) {
+            size += added ? 1 : -1;
+        }
+
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !new Cursor(true).hasNext();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        E element = (E) o;
+
+        return isInRange(element) && storage.contains(element);
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (!isInRange(e)) {
+            throw new IllegalArgumentException("Element is out of range");
+        }
+
+        return storage.add(e);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        E element = (E) o;
+
+        return isInRange(element) && storage.remove(element);
+    }
+
+    @Override
+    public void clear() {
+        if (fromStart && toEnd) {
+            storage.clear();
+        } else {
+            super.clear();
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link HashingEngine} reading files by {@link AsynchronousFileChannel}.
+ * <br>
+ * Up to <strong>maxInFlight</strong> files have reads in flight, while read content is hashed in a fixed pool
+ * of <strong>threads</strong>. On Linux and macOS the JDK implements the channel by blocking reads
+ * in the executor it is opened with, so channels get their own I/O pool of <strong>maxInFlight</strong> threads,
+ * and queue depth of storage is limited by <strong>maxInFlight</strong>, not by the number of hashing threads.
+ * <br>
+ * Each file in flight holds one buffer of {@link #BUFFER_SIZE} bytes.
+ * Info lines are written in the visit order through {@link ReorderBuffer}.
+ * <br>
+ * A file, which cannot be opened or read, is read again synchronously as {@link FailurePolicy} allows,
+ * in a separate pool, so waiting for a retry does not stall reads and hashing of other files.
+ * The first failure of the walk stops it as in {@link SequentialHashingEngine}.
+ */
+class AsyncHashingEngine implements HashingEngine {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileHashCalculator calculator;
+    private final WalkMetrics metrics;
+    private final ExecutorService executorService;
+    private final ExecutorService ioExecutorService;
+    private final ExecutorService retryExecutorService;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final ReorderBuffer reorderBuffer;
+    private final Queue<ByteBuffer> buffers;
+    private long nextSequence;
+
+    private volatile RecursiveWalkException failure;
+    private boolean failureThrown;
+
+    AsyncHashingEngine(ResultWriter writer, FileHashCalculator calculator, int threads, int maxInFlight) {
+        this.calculator = calculator;
+        this.maxInFlight = maxInFlight;
+
+        metrics = calculator.getMetrics();
+        executorService = Executors.newFixedThreadPool(threads);
+        ioExecutorService = Executors.newFixedThreadPool(maxInFlight);
+        // At most maxInFlight files are retried at once, as each of them holds a permit.
+        retryExecutorService = Executors.newCachedThreadPool();
+        inFlight = new Semaphore(maxInFlight);
+        reorderBuffer = new ReorderBuffer(writer, inFlight);
+        buffers = new ConcurrentLinkedQueue<>();
+
+        metrics.setQueueDepth(() -> maxInFlight - inFlight.availablePermits());
+        nextSequence = 0;
+    }
+
+    @Override
+    public void hashFile(Path file, BasicFileAttributes attributes) throws RecursiveWalkException {
+        long sequence = acquireSequence();
+        HashResult result = calculator.getCachedResult(file.toString(), attributes);
+
+        if (result != null) {
+            complete(sequence, result);
+            return;
+        }
+
+        AsynchronousFileChannel channel = null;
+        Exception openFailure = null;
+        long start = System.nanoTime();
+
+        try {
+            channel = AsynchronousFileChannel.open(file,
+                    Collections.singleton(StandardOpenOption.READ), ioExecutorService);
+        } catch (IOException | UnsupportedOperationException e) {
+            openFailure = e;
+        } finally {
+            metrics.recordStage(WalkMetrics.Stage.OPEN, start);
+        }
+
+        if (openFailure != null) {
+            recover(sequence, file, attributes, openFailure);
+            return;
+        }
+
+        new FileRead(sequence, file, attributes, channel).read();
+    }
+
+    @Override
+    public void hashStandardInput(String name) throws RecursiveWalkException {
+        long sequence = acquireSequence();
+        HashResult result = null;
+
+        try {
+            result = calculator.calculateStandardInput(name);
+        } finally {
+            complete(sequence, result);
+        }
+
+        checkFailure();
+    }
+
+    @Override
+    public void hashFailed(String file, Exception cause) throws RecursiveWalkException {
+        complete(acquireSequence(), calculator.getFailedResult(file, cause));
+        checkFailure();
+    }
+
+    @Override
+    public void flush() throws RecursiveWalkException {
+        checkFailure();
+        reorderBuffer.flush();
+    }
+
+    @Override
+    public void drain() throws RecursiveWalkException {
+        awaitInFlight();
+        flush();
+    }
+
+    @Override
+    public void close() throws RecursiveWalkException {
+        try {
+            // Completion handlers submit next reads to the executors, so they are shut down when all files are done.
+            awaitInFlight();
+        } finally {
+            executorService.shutdown();
+            ioExecutorService.shutdown();
+            retryExecutorService.shutdown();
+        }
+
+        try {
+            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            ioExecutorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            retryExecutorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            ioExecutorService.shutdownNow();
+            retryExecutorService.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new RecursiveWalkException("Interrupted while waiting for hashing threads", e);
+        }
+
+        checkFailure();
+    }
+
+    private void awaitInFlight() throws RecursiveWalkException {
+        try {
+            // All permits are free only when every submitted result is written.
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RecursiveWalkException("Interrupted while waiting for hashing threads", e);
+        }
+    }
+
+    private long acquireSequence() throws RecursiveWalkException {
+        checkFailure();
+
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RecursiveWalkException("Interrupted while waiting for hashing threads", e);
+        }
+
+        return nextSequence++;
+    }
+
+    private void complete(long sequence, HashResult result) {
+        try {
+            // Failed files still occupy their sequence number to let next lines go.
+            reorderBuffer.complete(sequence, result);
+        } catch (RecursiveWalkException e) {
+            setFailure(e);
+        }
+    }
+
+    /**
+     * Read <strong>file</strong> again in the retry pool after a failure with <strong>cause</strong>
+     * and complete its sequence.
+     */
+    private void recover(long sequence, Path file, BasicFileAttributes attributes, Throwable cause) {
+        Exception exception = cause instanceof Exception ? (Exception) cause : new IOException(cause);
+
+        try {
+            retryExecutorService.execute(() -> {
+                HashResult result = null;
+
+                try {
+                    result = calculator.recover(file, attributes, exception);
+                } catch (RecursiveWalkException e) {
+                    setFailure(e);
+                } catch (Throwable e) {
+                    setFailure(new RecursiveWalkException("Cannot hash file '" + file + "'", e));
+                } finally {
+                    complete(sequence, result);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            setFailure(new RecursiveWalkException("Cannot read file '" + file + "' again", e));
+            complete(sequence, null);
+        }
+    }
+
+    private synchronized void setFailure(RecursiveWalkException e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    private void checkFailure() throws RecursiveWalkException {
+        RecursiveWalkException currentFailure = failure;
+
+        // The walk is stopped by the first throw, so the same failure is not thrown again by close.
+        if (currentFailure != null && !failureThrown) {
+            failureThrown = true;
+            throw currentFailure;
+        }
+    }
+
+    private ByteBuffer takeBuffer() {
+        ByteBuffer buffer = buffers.poll();
+
+        return buffer == null ? ByteBuffer.allocateDirect(BUFFER_SIZE) : buffer;
+    }
+
+    /**
+     * Reading of one file, chaining the next read from completion of the previous one.
+     */
+    private class FileRead implements CompletionHandler<Integer, Void> {
+        private final long sequence;
+        private final Path file;
+        private final BasicFileAttributes attributes;
+        private final AsynchronousFileChannel channel;
+        private final ByteBuffer buffer;
+        private final FileHasher hasher;
+        private long position;
+        private long readStart;
+
+        private FileRead(long sequence, Path file, BasicFileAttributes attributes, AsynchronousFileChannel channel) {
+            this.sequence = sequence;
+            this.file = file;
+            this.attributes = attributes;
+            this.channel = channel;
+
+            buffer = takeBuffer();
+            hasher = calculator.createHasher();
+            position = 0;
+        }
+
+        private void read() {
+            if (failure != null) {
+                finish(null);
+                return;
+            }
+
+            buffer.clear();
+            readStart = System.nanoTime();
+
+            try {
+                channel.read(buffer, position, null, this);
+            } catch (RejectedExecutionException e) {
+                failed(e, null);
+            }
+        }
+
+        @Override
+        public void completed(Integer read, Void attachment) {
+            metrics.recordStage(WalkMetrics.Stage.READ, readStart);
+
+            // The channel calls back in the I/O pool, content is hashed in the hashing pool to let it read on.
+            try {
+                executorService.execute(() -> hash(read));
+            } catch (RejectedExecutionException e) {
+                setFailure(new RecursiveWalkException("Cannot hash file '" + file + "'", e));
+                finish(null);
+            }
+        }
+
+        private void hash(int read) {
+            boolean done = true;
+            HashResult result = null;
+
+            try {
+                if (read == -1) {
+                    result = calculator.getResult(file.toString(), attributes, hasher);
+                } else {
+                    long start = System.nanoTime();
+                    buffer.flip();
+                    metrics.recordBytes(buffer.remaining());
+                    hasher.update(buffer);
+                    metrics.recordStage(WalkMetrics.Stage.HASH, start);
+
+                    position += read;
+                    done = false;
+                }
+            } catch (RecursiveWalkException e) {
+                setFailure(e);
+            } catch (Throwable e) {
+                setFailure(new RecursiveWalkException("Cannot hash file '" + file + "'", e));
+            } finally {
+                // The sequence must be completed anyway, otherwise all next results wait for it forever.
+                if (done) {
+                    finish(result);
+                }
+            }
+
+            if (!done) {
+                read();
+            }
+        }
+
+        @Override
+        public void failed(Throwable exc, Void attachment) {
+            release();
+            recover(sequence, file, attributes, exc);
+        }
+
+        private void finish(HashResult result) {
+            release();
+            complete(sequence, result);
+        }
+
+        private void release() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Content has been read already.
+            }
+
+            buffers.add(buffer);
+        }
+    }
+}
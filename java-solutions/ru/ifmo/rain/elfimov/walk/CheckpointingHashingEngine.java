@@ -0,0 +1,109 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A {@link HashingEngine}, periodically saving {@link WalkCheckpoint} of another engine.
+ * <br>
+ * When a checkpoint is due, the engine is drained, output is forced to storage and the position
+ * of the walk is saved. Walk resumed from a checkpoint skips the files of the first root
+ * which are already written, so the root should be listed in the same order as before.
+ */
+class CheckpointingHashingEngine implements HashingEngine {
+    private final HashingEngine engine;
+    private final HashOutputWriter writer;
+    private final WalkCheckpoint checkpoint;
+    private long line;
+    private long files;
+    private long visited;
+    private boolean started;
+
+    CheckpointingHashingEngine(HashingEngine engine, HashOutputWriter writer, WalkCheckpoint checkpoint) {
+        this.engine = engine;
+        this.writer = writer;
+        this.checkpoint = checkpoint;
+
+        line = checkpoint.getLine();
+        files = checkpoint.getFiles();
+        visited = 0;
+        started = false;
+    }
+
+    @Override
+    public void startRoot() throws RecursiveWalkException {
+        if (started) {
+            line++;
+            files = 0;
+            visited = 0;
+        }
+
+        started = true;
+        engine.startRoot();
+        saveIfDue();
+    }
+
+    @Override
+    public void startEntry(int ordinal) throws RecursiveWalkException {
+        engine.startEntry(ordinal);
+    }
+
+    @Override
+    public void hashFile(Path file, BasicFileAttributes attributes) throws RecursiveWalkException {
+        if (isWritten()) {
+            return;
+        }
+
+        engine.hashFile(file, attributes);
+        files++;
+        saveIfDue();
+    }
+
+    @Override
+    public void hashFailed(String file, Exception cause) throws RecursiveWalkException {
+        if (isWritten()) {
+            return;
+        }
+
+        engine.hashFailed(file, cause);
+        files++;
+        saveIfDue();
+    }
+
+    @Override
+    public void hashStandardInput(String name) throws RecursiveWalkException {
+        if (isWritten()) {
+            return;
+        }
+
+        engine.hashStandardInput(name);
+        files++;
+        saveIfDue();
+    }
+
+    @Override
+    public void flush() throws RecursiveWalkException {
+        engine.flush();
+    }
+
+    @Override
+    public void drain() throws RecursiveWalkException {
+        engine.drain();
+    }
+
+    @Override
+    public void close() throws RecursiveWalkException {
+        engine.close();
+    }
+
+    private boolean isWritten() {
+        return ++visited <= files;
+    }
+
+    private void saveIfDue() throws RecursiveWalkException {
+        if (checkpoint.isDue()) {
+            engine.drain();
+            checkpoint.save(line, files, writer.force());
+        }
+    }
+}
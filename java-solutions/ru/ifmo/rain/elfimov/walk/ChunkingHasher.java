@@ -0,0 +1,155 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link FileHasher}, splitting content into content-defined chunks while hashing the whole content.
+ * <br>
+ * Chunk boundaries are found by Gear rolling hash: a boundary is put after a byte when
+ * top bits of the rolling hash are zero, so the average chunk size is <strong>chunkSize</strong>.
+ * Chunks are not shorter than a quarter and not longer than eight times of <strong>chunkSize</strong>.
+ * <br>
+ * Each passed buffer is scanned once for boundaries, and then passed to the whole content hasher.
+ */
+class ChunkingHasher implements FileHasher {
+    private static final long[] GEAR = createGearTable();
+
+    private final FileHasher hasher;
+    private final FileHasher chunkHasher;
+    private final long boundaryMask;
+    private final long minChunkLength;
+    private final long maxChunkLength;
+
+    private List<FileChunk> chunks;
+    private long gear;
+    private long chunkOffset;
+    private long chunkLength;
+
+    /**
+     * Creating a new {@link ChunkingHasher} instance.
+     *
+     * @param hasher a hasher of the whole content.
+     * @param chunkHasher a hasher of each chunk.
+     * @param chunkSize average size of chunk, a power of two.
+     */
+    ChunkingHasher(FileHasher hasher, FileHasher chunkHasher, int chunkSize) {
+        this.hasher = hasher;
+        this.chunkHasher = chunkHasher;
+
+        int bits = Integer.numberOfTrailingZeros(chunkSize);
+        boundaryMask = bits == 0 ? 0 : -1L << (Long.SIZE - bits);
+        minChunkLength = chunkSize / 4;
+        maxChunkLength = chunkSize * 8L;
+
+        chunks = new ArrayList<>();
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        int chunkStart = buffer.position();
+
+        long currentGear = gear;
+        long currentChunkLength = chunkLength;
+
+        for (int i = chunkStart; i < limit; i++) {
+            currentGear = (currentGear << 1) + GEAR[buffer.get(i) & 0xff];
+            currentChunkLength++;
+
+            if (currentChunkLength >= maxChunkLength
+                    || (currentChunkLength >= minChunkLength && (currentGear & boundaryMask) == 0)) {
+                updateChunk(buffer, chunkStart, i + 1);
+                chunkLength = currentChunkLength;
+                finishChunk();
+
+                chunkStart = i + 1;
+                currentGear = 0;
+                currentChunkLength = 0;
+            }
+        }
+
+        updateChunk(buffer, chunkStart, limit);
+        gear = currentGear;
+        chunkLength = currentChunkLength;
+
+        hasher.update(buffer);
+    }
+
+    private void updateChunk(ByteBuffer buffer, int from, int to) {
+        if (from < to) {
+            ByteBuffer part = buffer.duplicate();
+            part.limit(to).position(from);
+            chunkHasher.update(part);
+        }
+    }
+
+    private void finishChunk() {
+        chunks.add(new FileChunk(chunkOffset, chunkLength, chunkHasher.digest()));
+        chunkOffset += chunkLength;
+        chunkLength = 0;
+    }
+
+    /**
+     * Finish the last chunk and hashing of the whole content.
+     * <br>
+     * Chunks are kept until {@link #takeChunks()} or {@link #reset()} is called.
+     *
+     * @return hash of the whole content.
+     */
+    @Override
+    public byte[] digest() {
+        if (chunkLength > 0) {
+            finishChunk();
+        }
+
+        gear = 0;
+        chunkOffset = 0;
+
+        return hasher.digest();
+    }
+
+    /**
+     * Take chunks of content hashed before the last {@link #digest()}.
+     *
+     * @return chunks in content order.
+     */
+    List<FileChunk> takeChunks() {
+        List<FileChunk> result = chunks;
+        chunks = new ArrayList<>();
+
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        hasher.reset();
+        chunkHasher.reset();
+        chunks = new ArrayList<>();
+        gear = 0;
+        chunkOffset = 0;
+        chunkLength = 0;
+    }
+
+    /**
+     * Create a table of pseudo-random 64-bit values for each byte, the same for every run.
+     *
+     * @return generated table.
+     */
+    private static long[] createGearTable() {
+        long[] table = new long[256];
+        long state = 0x9E3779B97F4A7C15L;
+
+        for (int i = 0; i < table.length; i++) {
+            // SplitMix64 generator.
+            state += 0x9E3779B97F4A7C15L;
+            long value = state;
+            value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+            value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+            table[i] = value ^ (value >>> 31);
+        }
+
+        return table;
+    }
+}
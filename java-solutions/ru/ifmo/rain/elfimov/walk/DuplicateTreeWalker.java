@@ -0,0 +1,346 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link TreeWalker}, writing groups of files with equal content instead of hashes of all files.
+ * <br>
+ * Walked files are grouped by size taken from their attributes, without reading them.
+ * Files with a size shared by another file are grouped by hash of their first and last
+ * {@link #EDGE_SIZE} bytes, and only files left in groups after that are hashed entirely.
+ * Unless the hash is {@link HashAlgorithm#SHA256}, files with equal full hashes are compared byte by byte,
+ * so a collision of a short hash is never reported as a duplicate. Unique files are never read.
+ * <br>
+ * A file reached twice, by overlapping roots or by hard links, is taken only once.
+ * <br>
+ * Report is written when the walker is closed. Each group is written as info lines
+ * of its files in the walk order, followed by an empty line. Groups are ordered by their first file.
+ * Files which cannot be visited or read are left out of the report and reported to {@link FailurePolicy},
+ * which stops the walk in fail-fast mode.
+ */
+class DuplicateTreeWalker implements TreeWalker {
+    private static final int EDGE_SIZE = 1 << 12;
+
+    private final HashOutputWriter writer;
+    private final FileContentReader reader;
+    private final FileHashCalculator calculator;
+    private final WalkFilter filter;
+    private final int threads;
+    private final Map<Long, List<Candidate>> sizeGroups;
+    private final Set<Object> fileKeys;
+    private int visited;
+
+    DuplicateTreeWalker(HashOutputWriter writer, FileContentReader reader, FileHashCalculator calculator,
+                        WalkFilter filter, int threads) {
+        this.writer = writer;
+        this.reader = reader;
+        this.calculator = calculator;
+        this.filter = filter;
+        this.threads = threads;
+
+        sizeGroups = new LinkedHashMap<>();
+        fileKeys = new HashSet<>();
+        visited = 0;
+    }
+
+    @Override
+    public void walk(String root) throws RecursiveWalkException {
+        try {
+            Path rootPath = Paths.get(root);
+
+            Files.walkFileTree(rootPath, EnumSet.noneOf(FileVisitOption.class), filter.getMaxDepth(),
+                    new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return filter.acceptsDirectory(rootPath, dir)
+                            ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && filter.acceptsFile(rootPath, file, attrs)
+                            && fileKeys.add(getFileKey(file, attrs))) {
+                        sizeGroups.computeIfAbsent(attrs.size(), size -> new ArrayList<>())
+                                .add(new Candidate(visited++, file, attrs));
+                    }
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                    calculator.reportFailure(file.toString(), exc);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (InvalidPathException ignored) {
+        } catch (RecursiveWalkException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot walk '" + root + "'", e);
+        }
+    }
+
+    /**
+     * Identity of a file, shared by its hard links, or its normalized absolute path
+     * on file systems without file keys.
+     */
+    private static Object getFileKey(Path file, BasicFileAttributes attrs) {
+        Object key = attrs.fileKey();
+
+        return key != null ? key : file.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Do nothing, as groups are not known until all roots are walked.
+     */
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() throws RecursiveWalkException {
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<List<Candidate>> groups = new ArrayList<>();
+            List<List<Candidate>> hashGroups = new ArrayList<>();
+
+            for (Map.Entry<Long, List<Candidate>> sizeGroup : sizeGroups.entrySet()) {
+                long size = sizeGroup.getKey();
+                List<Candidate> candidates = sizeGroup.getValue();
+
+                if (candidates.size() < 2) {
+                    continue;
+                }
+
+                if (size == 0) {
+                    byte[] emptyHash = calculator.getAlgorithm().createHasher().digest();
+                    candidates.forEach(candidate -> candidate.hash = emptyHash);
+                    groups.add(candidates);
+                } else if (size <= 2 * EDGE_SIZE) {
+                    // Edges cover the whole file, so full hashes are compared at once.
+                    hashGroups.addAll(groupByFullHash(candidates, executorService));
+                } else {
+                    for (List<Candidate> edgeGroup : groupByHash(candidates, executorService, this::calculateEdgeHash)) {
+                        hashGroups.addAll(groupByFullHash(edgeGroup, executorService));
+                    }
+                }
+            }
+
+            // Equal SHA-256 hashes are trusted, shorter ones are confirmed by reading the files once more.
+            if (calculator.getAlgorithm() == HashAlgorithm.SHA256) {
+                groups.addAll(hashGroups);
+            } else {
+                groups.addAll(groupByContent(hashGroups, executorService));
+            }
+
+            groups.sort(Comparator.comparingInt(group -> group.get(0).index));
+
+            for (List<Candidate> group : groups) {
+                for (Candidate candidate : group) {
+                    writer.write(candidate.hash, candidate.file.toString());
+                }
+                writer.writeEmptyLine();
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private List<List<Candidate>> groupByFullHash(List<Candidate> candidates, ExecutorService executorService)
+            throws RecursiveWalkException {
+        return groupByHash(candidates, executorService, candidate -> {
+            // The calculator reports the failure itself.
+            HashResult result = calculator.calculate(candidate.file, candidate.attributes);
+
+            if (result.isFailed()) {
+                return null;
+            }
+
+            candidate.hash = result.getHash();
+            return candidate.hash;
+        });
+    }
+
+    private byte[] calculateEdgeHash(Candidate candidate) throws RecursiveWalkException {
+        FileHasher hasher = calculator.getAlgorithm().createHasher();
+
+        try {
+            reader.readEdges(candidate.file, EDGE_SIZE, hasher::update);
+        } catch (IOException e) {
+            calculator.reportFailure(candidate.file.toString(), e);
+            return null;
+        }
+
+        return hasher.digest();
+    }
+
+    /**
+     * Split <strong>candidates</strong> into groups of two or more files with equal hashes.
+     *
+     * @param candidates files of one group.
+     * @param executorService executor to calculate hashes in.
+     * @param hashFunction function to calculate hash of a file.
+     * @return groups in order of their first file, files in each group are in the walk order.
+     * @throws RecursiveWalkException when a file cannot be read in fail-fast mode or hashing threads are interrupted.
+     */
+    private static List<List<Candidate>> groupByHash(List<Candidate> candidates,
+                                                     ExecutorService executorService,
+                                                     HashFunction hashFunction) throws RecursiveWalkException {
+        List<Callable<byte[]>> tasks = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            tasks.add(() -> hashFunction.apply(candidate));
+        }
+
+        List<Future<byte[]>> hashes;
+        try {
+            hashes = executorService.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RecursiveWalkException("Interrupted while waiting for hashing threads", e);
+        }
+
+        Map<ByteBuffer, List<Candidate>> hashGroups = new LinkedHashMap<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            try {
+                byte[] hash = hashes.get(i).get();
+
+                // Unreadable file cannot be proved to be a duplicate.
+                if (hash != null) {
+                    hashGroups.computeIfAbsent(ByteBuffer.wrap(hash), key -> new ArrayList<>()).add(candidates.get(i));
+                }
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RecursiveWalkException("Interrupted while waiting for hashing threads", e);
+            }
+        }
+
+        List<List<Candidate>> result = new ArrayList<>();
+        for (List<Candidate> group : hashGroups.values()) {
+            if (group.size() > 1) {
+                result.add(group);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Split each of <strong>hashGroups</strong> into groups of files with equal content.
+     *
+     * @param hashGroups groups of files with equal hashes.
+     * @param executorService executor to compare files in.
+     * @return groups of two or more files, files in each group are in the walk order.
+     * @throws RecursiveWalkException when a file cannot be read in fail-fast mode or comparing threads are interrupted.
+     */
+    private List<List<Candidate>> groupByContent(List<List<Candidate>> hashGroups,
+                                                 ExecutorService executorService)
+            throws RecursiveWalkException {
+        List<Callable<List<List<Candidate>>>> tasks = new ArrayList<>();
+        for (List<Candidate> hashGroup : hashGroups) {
+            tasks.add(() -> splitByContent(hashGroup));
+        }
+
+        List<List<Candidate>> result = new ArrayList<>();
+        try {
+            for (Future<List<List<Candidate>>> groups : executorService.invokeAll(tasks)) {
+                result.addAll(groups.get());
+            }
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RecursiveWalkException("Interrupted while waiting for comparing threads", e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Compare each file of <strong>hashGroup</strong> with the first file of each group found before it.
+     * <br>
+     * Files of a group with equal hashes almost always have equal content, so each of them is usually read
+     * once more along with the first file.
+     */
+    private List<List<Candidate>> splitByContent(List<Candidate> hashGroup) throws RecursiveWalkException {
+        List<List<Candidate>> groups = new ArrayList<>();
+
+        for (Candidate candidate : hashGroup) {
+            List<Candidate> equalGroup = null;
+
+            try {
+                for (List<Candidate> group : groups) {
+                    if (Files.mismatch(group.get(0).file, candidate.file) == -1) {
+                        equalGroup = group;
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                // Unreadable file cannot be proved to be a duplicate.
+                calculator.reportFailure(candidate.file.toString(), e);
+                continue;
+            }
+
+            if (equalGroup == null) {
+                equalGroup = new ArrayList<>();
+                groups.add(equalGroup);
+            }
+            equalGroup.add(candidate);
+        }
+
+        groups.removeIf(group -> group.size() < 2);
+
+        return groups;
+    }
+
+    private static RecursiveWalkException unwrap(ExecutionException e) {
+        return e.getCause() instanceof RecursiveWalkException
+                ? (RecursiveWalkException) e.getCause()
+                : new RecursiveWalkException("Cannot find duplicates", e.getCause());
+    }
+
+    /**
+     * A function returning hash of a file or <strong>null</strong> if the file cannot be read.
+     */
+    private interface HashFunction {
+        byte[] apply(Candidate candidate) throws RecursiveWalkException;
+    }
+
+    private static class Candidate {
+        private final int index;
+        private final Path file;
+        private final BasicFileAttributes attributes;
+        private byte[] hash;
+
+        private Candidate(int index, Path file, BasicFileAttributes attributes) {
+            this.index = index;
+            this.file = file;
+            this.attributes = attributes;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A policy for files, which cannot be read.
+ * <br>
+ * Transient errors are retried up to <strong>retries</strong> times, waiting <strong>retryDelay</strong>
+ * milliseconds before the first retry and twice as long before each next one, but at most {@link #MAX_RETRY_DELAY}.
+ * Errors reported by the file system for the file itself, such as a missing file or denied access, are not retried.
+ * <br>
+ * A file, which still cannot be read, gets the zero hash and the walk goes on, unless the policy is fail-fast.
+ * Causes of all failures are written to the error log as lines <strong>"path\tcause"</strong>.
+ * <br>
+ * The policy is thread-safe.
+ */
+class FailurePolicy implements Closeable {
+    static final long DEFAULT_RETRY_DELAY = 100;
+    private static final long MAX_RETRY_DELAY = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * The policy writing the zero hash for failed files at once.
+     */
+    static final FailurePolicy CONTINUE = new FailurePolicy(0, DEFAULT_RETRY_DELAY, false, null, null);
+
+    private final int retries;
+    private final long retryDelay;
+    private final boolean failFast;
+    private final Path errorLogFile;
+    private final BufferedWriter errorLog;
+    private IOException errorLogFailure;
+
+    private FailurePolicy(int retries, long retryDelay, boolean failFast, Path errorLogFile, BufferedWriter errorLog) {
+        this.retries = retries;
+        this.retryDelay = retryDelay;
+        this.failFast = failFast;
+        this.errorLogFile = errorLogFile;
+        this.errorLog = errorLog;
+    }
+
+    /**
+     * Creating a new {@link FailurePolicy} instance, creating or truncating <strong>errorLogFile</strong>.
+     *
+     * @param retries number of retries of transient errors.
+     * @param retryDelay delay before the first retry in milliseconds.
+     * @param failFast whether a failed file stops the walk.
+     * @param errorLogFile an error log or <strong>null</strong> to count errors in metrics only.
+     * @return created policy.
+     * @throws RecursiveWalkException when error log cannot be created.
+     */
+    static FailurePolicy open(int retries, long retryDelay, boolean failFast, Path errorLogFile)
+            throws RecursiveWalkException {
+        if (errorLogFile == null) {
+            return new FailurePolicy(retries, retryDelay, failFast, null, null);
+        }
+
+        try {
+            return new FailurePolicy(retries, retryDelay, failFast, errorLogFile,
+                    Files.newBufferedWriter(errorLogFile, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot create error log '" + errorLogFile + "'", e);
+        }
+    }
+
+    /**
+     * Decide whether reading should be tried again after <strong>attempt</strong> retries failed with
+     * <strong>cause</strong>, waiting for the backoff delay if it should.
+     *
+     * @param attempt number of retries done.
+     * @param cause cause of the last failure.
+     * @return <strong>true</strong> if reading should be tried again.
+     * @throws RecursiveWalkException when interrupted while waiting.
+     */
+    boolean retry(int attempt, Exception cause) throws RecursiveWalkException {
+        if (attempt >= retries || !isTransient(cause)) {
+            return false;
+        }
+
+        long delay = retryDelay;
+        for (int i = 0; i < attempt && delay < MAX_RETRY_DELAY; i++) {
+            delay *= 2;
+        }
+
+        try {
+            Thread.sleep(Math.min(delay, MAX_RETRY_DELAY));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RecursiveWalkException("Interrupted while waiting to retry reading", e);
+        }
+
+        return true;
+    }
+
+    private static boolean isTransient(Exception cause) {
+        return cause instanceof IOException && !(cause instanceof FileSystemException);
+    }
+
+    boolean isFailFast() {
+        return failFast;
+    }
+
+    /**
+     * Write <strong>cause</strong> of failed <strong>file</strong> to the error log.
+     * <br>
+     * The walk is not stopped by the error log, its failure is thrown by {@link #close()}.
+     *
+     * @param file a name of failed file.
+     * @param cause cause of failure.
+     */
+    synchronized void log(String file, Throwable cause) {
+        if (errorLog == null || errorLogFailure != null) {
+            return;
+        }
+
+        try {
+            errorLog.write(file + "\t" + cause);
+            errorLog.newLine();
+            // Log of a long walk should survive its crash.
+            errorLog.flush();
+        } catch (IOException e) {
+            errorLogFailure = e;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws RecursiveWalkException {
+        if (errorLog == null) {
+            return;
+        }
+
+        try {
+            errorLog.close();
+        } catch (IOException e) {
+            if (errorLogFailure == null) {
+                errorLogFailure = e;
+            }
+        }
+
+        if (errorLogFailure != null) {
+            throw new RecursiveWalkException("Cannot write error log '" + errorLogFile + "'", errorLogFailure);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ru.ifmo.rain.elfimov.walk;
+
+/**
+ * A content-defined chunk of a file.
+ */
+class FileChunk {
+    private final long offset;
+    private final long length;
+    private final byte[] hash;
+
+    FileChunk(long offset, long length, byte[] hash) {
+        this.offset = offset;
+        this.length = length;
+        this.hash = hash;
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    long getLength() {
+        return length;
+    }
+
+    byte[] getHash() {
+        return hash;
+    }
+}
@@ -0,0 +1,181 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * A reader, passing file content to a consumer through {@link FileChannel} without intermediate copies.
+ * <br>
+ * Files not smaller than mapping threshold are memory-mapped by windows of {@link #MAPPING_WINDOW} bytes.
+ * A fault on access to the mapping is reported as {@link IOException}, as a failed read would be.
+ * Smaller files and files of unknown size (like named pipes) are read into a direct {@link ByteBuffer},
+ * taken from a pool of the reader, as data arrives. The pool holds as many buffers as files have been read at once,
+ * even when each file is read by a new virtual thread.
+ */
+class FileContentReader {
+    static final long DEFAULT_MAPPING_THRESHOLD = 1 << 20;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long MAPPING_WINDOW = 1 << 28;
+
+    private final long mappingThreshold;
+    private final WalkMetrics metrics;
+    private final Queue<ByteBuffer> buffers;
+
+    /**
+     * Creating a new {@link FileContentReader} instance.
+     *
+     * @param mappingThreshold minimal size of a file to be memory-mapped.
+     * @param metrics metrics to record open, read and hash stages to.
+     */
+    FileContentReader(long mappingThreshold, WalkMetrics metrics) {
+        this.mappingThreshold = mappingThreshold;
+        this.metrics = metrics;
+
+        buffers = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Read the whole content of <strong>file</strong>, passing it to <strong>consumer</strong> by parts.
+     * <br>
+     * Passed buffer is valid only while <strong>consumer</strong> is running.
+     *
+     * @param file a file to read.
+     * @param consumer a consumer of file content parts.
+     * @throws IOException when file cannot be opened or read.
+     */
+    void read(Path file, Consumer<ByteBuffer> consumer) throws IOException {
+        try (FileChannel channel = open(file)) {
+            long size = channel.size();
+
+            if (size >= mappingThreshold && size > 0) {
+                readMapped(channel, size, consumer);
+            } else {
+                readBuffered(channel, consumer);
+            }
+        }
+    }
+
+    /**
+     * Read first and last <strong>edgeSize</strong> bytes of <strong>file</strong>,
+     * passing them to <strong>consumer</strong> by parts. Each byte is read at most once.
+     *
+     * @param file a file to read.
+     * @param edgeSize size of each edge.
+     * @param consumer a consumer of file content parts.
+     * @throws IOException when file cannot be opened or read.
+     */
+    void readEdges(Path file, int edgeSize, Consumer<ByteBuffer> consumer) throws IOException {
+        try (FileChannel channel = open(file)) {
+            long size = channel.size();
+
+            readRange(channel, 0, Math.min(edgeSize, size), consumer);
+            readRange(channel, Math.max(edgeSize, size - edgeSize), size, consumer);
+        }
+    }
+
+    private FileChannel open(Path file) throws IOException {
+        long start = System.nanoTime();
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        metrics.recordStage(WalkMetrics.Stage.OPEN, start);
+
+        return channel;
+    }
+
+    private void readRange(FileChannel channel, long from, long to, Consumer<ByteBuffer> consumer)
+            throws IOException {
+        ByteBuffer buffer = takeBuffer();
+
+        try {
+            for (long position = from; position < to; ) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), to - position));
+
+                long start = System.nanoTime();
+                int read = channel.read(buffer, position);
+                metrics.recordStage(WalkMetrics.Stage.READ, start);
+
+                if (read == -1) {
+                    break;
+                }
+
+                position += read;
+                buffer.flip();
+                accept(buffer, consumer);
+            }
+        } finally {
+            buffers.add(buffer);
+        }
+    }
+
+    private ByteBuffer takeBuffer() {
+        ByteBuffer buffer = buffers.poll();
+
+        return buffer == null ? ByteBuffer.allocateDirect(BUFFER_SIZE) : buffer;
+    }
+
+    private void accept(ByteBuffer buffer, Consumer<ByteBuffer> consumer) {
+        long start = System.nanoTime();
+        metrics.recordBytes(buffer.remaining());
+        consumer.accept(buffer);
+        metrics.recordStage(WalkMetrics.Stage.HASH, start);
+    }
+
+    /**
+     * Read the whole standard input, passing it to <strong>consumer</strong> by parts.
+     *
+     * @param consumer a consumer of input parts.
+     * @throws IOException when standard input cannot be read.
+     */
+    void readStandardInput(Consumer<ByteBuffer> consumer) throws IOException {
+        // Standard input channel must not be closed.
+        readBuffered(new FileInputStream(FileDescriptor.in).getChannel(), consumer);
+    }
+
+    private void readMapped(FileChannel channel, long size, Consumer<ByteBuffer> consumer) throws IOException {
+        for (long position = 0; position < size; position += MAPPING_WINDOW) {
+            long start = System.nanoTime();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPING_WINDOW, size - position));
+            metrics.recordStage(WalkMetrics.Stage.READ, start);
+
+            try {
+                accept(buffer, consumer);
+            } catch (InternalError e) {
+                // A file truncated while mapped or an I/O error of the device faults on access to the mapping.
+                throw new IOException("Cannot read mapped content", e);
+            }
+        }
+    }
+
+    private void readBuffered(ReadableByteChannel channel, Consumer<ByteBuffer> consumer) throws IOException {
+        ByteBuffer buffer = takeBuffer();
+        buffer.clear();
+
+        try {
+            while (true) {
+                long start = System.nanoTime();
+                int read = channel.read(buffer);
+                metrics.recordStage(WalkMetrics.Stage.READ, start);
+
+                if (read == -1) {
+                    break;
+                }
+
+                buffer.flip();
+                accept(buffer, consumer);
+                buffer.clear();
+            }
+        } finally {
+            buffers.add(buffer);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A calculator of file hashes by the chosen {@link HashAlgorithm}.
+ * <br>
+ * The calculator is thread-safe, each file is hashed by a new {@link FileHasher}.
+ * <br>
+ * If {@link HashCache} is provided, files with unchanged metadata are not read at all.
+ * If chunk size is provided, content-defined chunks are hashed in the same pass by {@link ChunkingHasher}.
+ * <br>
+ * Files, which cannot be read, are retried and reported by {@link FailurePolicy}.
+ */
+class FileHashCalculator {
+    private final FileContentReader reader;
+    private final HashAlgorithm algorithm;
+    private final HashCache cache;
+    private final int chunkSize;
+    private final WalkMetrics metrics;
+    private final FailurePolicy failurePolicy;
+
+    /**
+     * Creating a new {@link FileHashCalculator} instance.
+     *
+     * @param reader a reader of file content.
+     * @param algorithm a hash algorithm.
+     * @param cache a hash cache or <strong>null</strong>.
+     * @param chunkSize average size of content-defined chunks or <strong>0</strong> to hash whole files only.
+     * @param metrics metrics to record visited files and errors to.
+     * @param failurePolicy a policy for files, which cannot be read.
+     */
+    FileHashCalculator(FileContentReader reader, HashAlgorithm algorithm, HashCache cache, int chunkSize,
+                       WalkMetrics metrics, FailurePolicy failurePolicy) {
+        this.reader = reader;
+        this.algorithm = algorithm;
+        this.cache = cache;
+        this.chunkSize = chunkSize;
+        this.metrics = metrics;
+        this.failurePolicy = failurePolicy;
+    }
+
+    /**
+     * Creating a new {@link FileHashCalculator} instance with {@link FailurePolicy#CONTINUE} policy.
+     *
+     * @param reader a reader of file content.
+     * @param algorithm a hash algorithm.
+     * @param cache a hash cache or <strong>null</strong>.
+     * @param chunkSize average size of content-defined chunks or <strong>0</strong> to hash whole files only.
+     * @param metrics metrics to record visited files and errors to.
+     */
+    FileHashCalculator(FileContentReader reader, HashAlgorithm algorithm, HashCache cache, int chunkSize,
+                       WalkMetrics metrics) {
+        this(reader, algorithm, cache, chunkSize, metrics, FailurePolicy.CONTINUE);
+    }
+
+    /**
+     * Calculate hash of <strong>file</strong> content.
+     *
+     * @param file a file to hash.
+     * @param attributes attributes of the file, read by walker.
+     * @return hash of the file or the zero hash if it cannot be read.
+     * @throws RecursiveWalkException when file cannot be read and the policy is fail-fast.
+     */
+    HashResult calculate(Path file, BasicFileAttributes attributes) throws RecursiveWalkException {
+        String name = file.toString();
+        HashResult result = getCachedResult(name, attributes);
+
+        if (result != null) {
+            return result;
+        }
+
+        FileHasher hasher;
+        try {
+            hasher = read(file);
+        } catch (IOException e) {
+            return recover(file, attributes, e);
+        }
+
+        return getResult(name, attributes, hasher);
+    }
+
+    /**
+     * Read <strong>file</strong> again after the first attempt failed with <strong>cause</strong>,
+     * as long as {@link FailurePolicy} allows.
+     *
+     * @param file a file to hash.
+     * @param attributes attributes of the file, read by walker.
+     * @param cause cause of the first failure.
+     * @return hash of the file or the zero hash if it still cannot be read.
+     * @throws RecursiveWalkException when file cannot be read and the policy is fail-fast.
+     */
+    HashResult recover(Path file, BasicFileAttributes attributes, Exception cause) throws RecursiveWalkException {
+        String name = file.toString();
+        FileHasher hasher = null;
+
+        for (int attempt = 0; hasher == null && failurePolicy.retry(attempt, cause); attempt++) {
+            try {
+                hasher = read(file);
+            } catch (IOException e) {
+                cause = e;
+            }
+        }
+
+        return hasher == null ? getReadFailedResult(name, cause) : getResult(name, attributes, hasher);
+    }
+
+    private FileHasher read(Path file) throws IOException {
+        FileHasher hasher = createHasher();
+        reader.read(file, hasher::update);
+
+        return hasher;
+    }
+
+    /**
+     * Get cached result of <strong>file</strong>, which content is read by the caller.
+     * <br>
+     * On cache miss content should be passed to {@link #createHasher()} and completed by {@link #getResult}.
+     *
+     * @param file a name of file to hash.
+     * @param attributes attributes of the file, read by walker.
+     * @return cached result or <strong>null</strong> if the file should be read.
+     */
+    HashResult getCachedResult(String file, BasicFileAttributes attributes) {
+        metrics.recordFile();
+
+        if (cache == null) {
+            return null;
+        }
+
+        byte[] hash = cache.get(file, attributes);
+
+        return hash == null ? null : new HashResult(hash, file);
+    }
+
+    /**
+     * Create a hasher for content of one file.
+     *
+     * @return a new hasher.
+     */
+    FileHasher createHasher() {
+        FileHasher hasher = algorithm.createHasher();
+
+        if (chunkSize > 0) {
+            return new ChunkingHasher(hasher, algorithm.createHasher(), chunkSize);
+        }
+
+        return hasher;
+    }
+
+    /**
+     * Complete result of <strong>file</strong>, which whole content is passed to <strong>hasher</strong>,
+     * and put it to cache.
+     *
+     * @param file a name of hashed file.
+     * @param attributes attributes of the file, read by walker.
+     * @param hasher a hasher created by {@link #createHasher()}.
+     * @return hash of the file.
+     * @throws RecursiveWalkException when the hash cannot be put to cache.
+     */
+    HashResult getResult(String file, BasicFileAttributes attributes, FileHasher hasher) throws RecursiveWalkException {
+        HashResult result = getResult(file, hasher);
+        putCachedResult(file, attributes, result);
+
+        return result;
+    }
+
+    /**
+     * Get result of <strong>file</strong>, which content cannot be read, and report its failure.
+     *
+     * @param file a name of file, which cannot be read.
+     * @param cause cause of failure.
+     * @return result with zero hash.
+     * @throws RecursiveWalkException when the policy is fail-fast.
+     */
+    private HashResult getReadFailedResult(String file, Exception cause) throws RecursiveWalkException {
+        reportFailure(file, cause);
+
+        return HashResult.failed(algorithm.getErrorHash(), file);
+    }
+
+    /**
+     * Report <strong>file</strong>, which cannot be read because of <strong>cause</strong>,
+     * to metrics and the error log of {@link FailurePolicy}.
+     *
+     * @param file a name of file, which cannot be read.
+     * @param cause cause of failure.
+     * @throws RecursiveWalkException when the policy is fail-fast.
+     */
+    void reportFailure(String file, Exception cause) throws RecursiveWalkException {
+        metrics.recordError(cause);
+        failurePolicy.log(file, cause);
+
+        if (failurePolicy.isFailFast()) {
+            throw new RecursiveWalkException("Cannot read file '" + file + "'", cause);
+        }
+    }
+
+    /**
+     * Calculate hash of the whole standard input.
+     *
+     * @param name a name of standard input to write.
+     * @return hash of standard input or the zero hash if it cannot be read.
+     * @throws RecursiveWalkException when standard input cannot be read and the policy is fail-fast.
+     */
+    HashResult calculateStandardInput(String name) throws RecursiveWalkException {
+        metrics.recordFile();
+
+        // Consumed input cannot be read again, so it is never retried.
+        FileHasher hasher = createHasher();
+        try {
+            reader.readStandardInput(hasher::update);
+        } catch (IOException e) {
+            return getReadFailedResult(name, e);
+        }
+
+        return getResult(name, hasher);
+    }
+
+    /**
+     * Get result for <strong>file</strong>, which cannot be read.
+     *
+     * @param file a name of failed file.
+     * @return result with zero hash.
+     */
+    HashResult getFailedResult(String file) {
+        metrics.recordFile();
+
+        return HashResult.failed(algorithm.getErrorHash(), file);
+    }
+
+    /**
+     * Get result for <strong>file</strong>, which cannot be visited because of <strong>error</strong>,
+     * and write the error to the error log.
+     *
+     * @param file a name of failed file.
+     * @param error cause of failure.
+     * @return result with zero hash.
+     */
+    HashResult getFailedResult(String file, Throwable error) {
+        metrics.recordError(error);
+        failurePolicy.log(file, error);
+
+        return getFailedResult(file);
+    }
+
+    private static HashResult getResult(String name, FileHasher hasher) {
+        byte[] hash = hasher.digest();
+
+        if (hasher instanceof ChunkingHasher) {
+            return new HashResult(hash, name, ((ChunkingHasher) hasher).takeChunks());
+        }
+
+        return new HashResult(hash, name);
+    }
+
+    private void putCachedResult(String file, BasicFileAttributes attributes, HashResult result)
+            throws RecursiveWalkException {
+        if (cache != null) {
+            cache.put(file, attributes, result.getHash());
+        }
+    }
+
+    HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    WalkMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,31 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An incremental hash function over file content.
+ * <br>
+ * Instances are not thread-safe, one instance is used to hash one file at a time.
+ */
+public interface FileHasher {
+    /**
+     * Update hash with all remaining bytes of <strong>buffer</strong>.
+     * <br>
+     * Position of <strong>buffer</strong> is moved to its limit.
+     *
+     * @param buffer next part of the content.
+     */
+    void update(ByteBuffer buffer);
+
+    /**
+     * Finish hashing and reset hasher to its initial state.
+     *
+     * @return hash of all the content passed since the last reset, most significant byte first.
+     */
+    byte[] digest();
+
+    /**
+     * Reset hasher to its initial state, dropping all passed content.
+     */
+    void reset();
+}
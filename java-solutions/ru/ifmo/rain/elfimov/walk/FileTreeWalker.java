@@ -0,0 +1,69 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumSet;
+
+/**
+ * A {@link TreeWalker}, visiting each root by {@link Files#walkFileTree} and passing files to {@link HashingEngine}.
+ */
+class FileTreeWalker implements TreeWalker {
+    private final HashingEngine engine;
+    private final boolean standardInputData;
+    private final WalkMetrics metrics;
+    private final WalkFilter filter;
+    private final WalkShard shard;
+
+    FileTreeWalker(HashingEngine engine, boolean standardInputData, WalkMetrics metrics, WalkFilter filter,
+                   WalkShard shard) {
+        this.engine = engine;
+        this.standardInputData = standardInputData;
+        this.metrics = metrics;
+        this.filter = filter;
+        this.shard = shard;
+    }
+
+    @Override
+    public void walk(String root) throws RecursiveWalkException {
+        engine.startRoot();
+
+        if (!shard.acceptsRoot(root)) {
+            return;
+        }
+
+        if (standardInputData && WalkOptions.STANDARD_STREAM.equals(root)) {
+            if (shard.acceptsRootFile(root)) {
+                engine.hashStandardInput(root);
+            }
+            return;
+        }
+
+        try {
+            Path path = Paths.get(root);
+            Files.walkFileTree(path, EnumSet.noneOf(FileVisitOption.class), filter.getMaxDepth(),
+                    new RecursiveFileVisitor(engine, metrics, root, path, filter, shard));
+        } catch (InvalidPathException e) {
+            if (shard.acceptsRootFile(root)) {
+                engine.hashFailed(root, e);
+            }
+        } catch (RecursiveWalkException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot walk '" + root + "'", e);
+        }
+    }
+
+    @Override
+    public void flush() throws RecursiveWalkException {
+        engine.flush();
+    }
+
+    @Override
+    public void close() throws RecursiveWalkException {
+        engine.close();
+    }
+}
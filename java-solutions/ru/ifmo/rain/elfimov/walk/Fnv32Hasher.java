@@ -0,0 +1,59 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 32-bit FNV hash, each byte is added by multiplying by FNV prime and then xor-ing the byte in.
+ */
+public class Fnv32Hasher implements FileHasher {
+    private static final int OFFSET_BASIS = 0x811c9dc5;
+    private static final int PRIME = 0x01000193;
+
+    private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private int hash = OFFSET_BASIS;
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        int currentHash = hash;
+        int position = buffer.position();
+        int limit = buffer.limit();
+
+        // Bytes of a little-endian word go from the lowest one in the order they are stored.
+        for (; limit - position >= Long.BYTES; position += Long.BYTES) {
+            long word = (long) WORDS.get(buffer, position);
+
+            currentHash = (currentHash * PRIME) ^ ((int) word & 0xff);
+            currentHash = (currentHash * PRIME) ^ ((int) (word >>> 8) & 0xff);
+            currentHash = (currentHash * PRIME) ^ ((int) (word >>> 16) & 0xff);
+            currentHash = (currentHash * PRIME) ^ ((int) (word >>> 24) & 0xff);
+            currentHash = (currentHash * PRIME) ^ ((int) (word >>> 32) & 0xff);
+            currentHash = (currentHash * PRIME) ^ ((int) (word >>> 40) & 0xff);
+            currentHash = (currentHash * PRIME) ^ ((int) (word >>> 48) & 0xff);
+            currentHash = (currentHash * PRIME) ^ ((int) (word >>> 56) & 0xff);
+        }
+
+        for (; position < limit; position++) {
+            currentHash = (currentHash * PRIME) ^ (buffer.get(position) & 0xff);
+        }
+
+        buffer.position(limit);
+        hash = currentHash;
+    }
+
+    @Override
+    public byte[] digest() {
+        byte[] result = ByteBuffer.allocate(Integer.BYTES).putInt(hash).array();
+        reset();
+
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        hash = OFFSET_BASIS;
+    }
+}
@@ -0,0 +1,59 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 64-bit FNV hash in the same variant as {@link Fnv32Hasher}.
+ */
+public class Fnv64Hasher implements FileHasher {
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private long hash = OFFSET_BASIS;
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        long currentHash = hash;
+        int position = buffer.position();
+        int limit = buffer.limit();
+
+        // Bytes of a little-endian word go from the lowest one in the order they are stored.
+        for (; limit - position >= Long.BYTES; position += Long.BYTES) {
+            long word = (long) WORDS.get(buffer, position);
+
+            currentHash = (currentHash * PRIME) ^ (word & 0xff);
+            currentHash = (currentHash * PRIME) ^ ((word >>> 8) & 0xff);
+            currentHash = (currentHash * PRIME) ^ ((word >>> 16) & 0xff);
+            currentHash = (currentHash * PRIME) ^ ((word >>> 24) & 0xff);
+            currentHash = (currentHash * PRIME) ^ ((word >>> 32) & 0xff);
+            currentHash = (currentHash * PRIME) ^ ((word >>> 40) & 0xff);
+            currentHash = (currentHash * PRIME) ^ ((word >>> 48) & 0xff);
+            currentHash = (currentHash * PRIME) ^ ((word >>> 56) & 0xff);
+        }
+
+        for (; position < limit; position++) {
+            currentHash = (currentHash * PRIME) ^ (buffer.get(position) & 0xff);
+        }
+
+        buffer.position(limit);
+        hash = currentHash;
+    }
+
+    @Override
+    public byte[] digest() {
+        byte[] result = ByteBuffer.allocate(Long.BYTES).putLong(hash).array();
+        reset();
+
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        hash = OFFSET_BASIS;
+    }
+}
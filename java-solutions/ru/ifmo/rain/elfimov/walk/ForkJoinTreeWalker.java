@@ -0,0 +1,202 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A {@link TreeWalker}, walking roots in a {@link ForkJoinPool}.
+ * <br>
+ * Every directory and file is a {@link RecursiveTask}, so subtrees of one huge root and
+ * different roots are stolen by all workers. Several roots are walked at the same time,
+ * info lines are written in the input order with the same order of files inside a root
+ * as {@link Files#walkFileTree} gives.
+ * <br>
+ * All info lines of a root are kept in memory until the root is written.
+ */
+class ForkJoinTreeWalker implements TreeWalker {
+    private static final int ROOTS_IN_FLIGHT_PER_THREAD = 2;
+
+    private final ResultWriter writer;
+    private final FileHashCalculator calculator;
+    private final boolean standardInputData;
+    private final WalkFilter filter;
+    private final ForkJoinPool pool;
+    private final Queue<Future<List<HashResult>>> pendingRoots;
+    private final int maxPendingRoots;
+
+    ForkJoinTreeWalker(ResultWriter writer, FileHashCalculator calculator, boolean standardInputData,
+                       WalkFilter filter, int threads) {
+        this.writer = writer;
+        this.calculator = calculator;
+        this.standardInputData = standardInputData;
+        this.filter = filter;
+
+        pool = new ForkJoinPool(threads);
+        pendingRoots = new ArrayDeque<>();
+        maxPendingRoots = threads * ROOTS_IN_FLIGHT_PER_THREAD;
+
+        calculator.getMetrics().setQueueDepth(() -> (int) Math.min(pool.getQueuedTaskCount(), Integer.MAX_VALUE));
+    }
+
+    @Override
+    public void walk(String root) throws RecursiveWalkException {
+        while (pendingRoots.size() >= maxPendingRoots) {
+            writeFirstRoot();
+        }
+
+        if (standardInputData && WalkOptions.STANDARD_STREAM.equals(root)) {
+            pendingRoots.add(pool.submit(() -> Collections.singletonList(calculator.calculateStandardInput(root))));
+            return;
+        }
+
+        try {
+            Path path = Paths.get(root);
+            pendingRoots.add(pool.submit(new PathTask(path, path, 0)));
+        } catch (InvalidPathException e) {
+            pendingRoots.add(CompletableFuture.completedFuture(
+                    Collections.singletonList(calculator.getFailedResult(root, e))));
+        }
+    }
+
+    @Override
+    public void flush() throws RecursiveWalkException {
+        // Roots still in the pool are left to the next calls, so streamed input is walked in parallel.
+        while (!pendingRoots.isEmpty() && pendingRoots.peek().isDone()) {
+            writeFirstRoot();
+        }
+
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws RecursiveWalkException {
+        try {
+            while (!pendingRoots.isEmpty()) {
+                writeFirstRoot();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void writeFirstRoot() throws RecursiveWalkException {
+        List<HashResult> results;
+
+        try {
+            results = pendingRoots.remove().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RecursiveWalkException("Interrupted while waiting for walking threads", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof UncheckedIOException && cause.getCause() instanceof RecursiveWalkException) {
+                throw (RecursiveWalkException) cause.getCause();
+            } else if (cause instanceof RecursiveWalkException) {
+                throw (RecursiveWalkException) cause;
+            }
+
+            throw new RecursiveWalkException("Cannot walk root", e);
+        }
+
+        for (HashResult result : results) {
+            writer.write(result);
+        }
+    }
+
+    /**
+     * A task, hashing a file or all files under a directory.
+     */
+    @SuppressWarnings("serial")
+    private class PathTask extends RecursiveTask<List<HashResult>> {
+        private final Path root;
+        private final Path path;
+        private final int depth;
+
+        private PathTask(Path root, Path path, int depth) {
+            this.root = root;
+            this.path = path;
+            this.depth = depth;
+        }
+
+        @Override
+        protected List<HashResult> compute() {
+            BasicFileAttributes attributes;
+            long start = System.nanoTime();
+
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                return getFailedResult(e);
+            } finally {
+                calculator.getMetrics().recordStage(WalkMetrics.Stage.STAT, start);
+            }
+
+            try {
+                if (attributes.isDirectory()) {
+                    // Directories at the maximal depth are not entered, as in Files.walkFileTree.
+                    if (depth == filter.getMaxDepth() || !filter.acceptsDirectory(root, path)) {
+                        return Collections.emptyList();
+                    }
+
+                    return computeDirectory();
+                } else if (filter.acceptsFile(root, path, attributes)) {
+                    return Collections.singletonList(calculator.calculate(path, attributes));
+                } else {
+                    return Collections.emptyList();
+                }
+            } catch (RecursiveWalkException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private List<HashResult> computeDirectory() throws RecursiveWalkException {
+            List<PathTask> children = new ArrayList<>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (Path child : stream) {
+                    children.add(new PathTask(root, child, depth + 1));
+                }
+            } catch (IOException e) {
+                return getFailedResult(e);
+            } catch (DirectoryIteratorException e) {
+                throw new RecursiveWalkException("Cannot read directory '" + path + "'", e.getCause());
+            }
+
+            invokeAll(children);
+
+            List<HashResult> results = new ArrayList<>();
+            for (PathTask child : children) {
+                results.addAll(child.join());
+            }
+
+            return results;
+        }
+
+        private List<HashResult> getFailedResult(IOException e) {
+            if (!filter.acceptsName(root, path)) {
+                return Collections.emptyList();
+            }
+
+            return Collections.singletonList(calculator.getFailedResult(path.toString(), e));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.util.function.Supplier;
+
+/**
+ * Built-in hash algorithms of {@link RecursiveWalk}.
+ */
+public enum HashAlgorithm {
+    FNV32("fnv32", 4, Fnv32Hasher::new),
+    FNV64("fnv64", 8, Fnv64Hasher::new),
+    XXHASH64("xxhash64", 8, XxHash64Hasher::new),
+    SHA256("sha256", 32, Sha256Hasher::new);
+
+    private final String name;
+    private final int digestLength;
+    private final Supplier<FileHasher> hasherFactory;
+
+    HashAlgorithm(String name, int digestLength, Supplier<FileHasher> hasherFactory) {
+        this.name = name;
+        this.digestLength = digestLength;
+        this.hasherFactory = hasherFactory;
+    }
+
+    /**
+     * Find algorithm by its command line <strong>name</strong>.
+     *
+     * @param name name of algorithm.
+     * @return algorithm with provided name.
+     * @throws RecursiveWalkException when there is no such algorithm.
+     */
+    public static HashAlgorithm forName(String name) throws RecursiveWalkException {
+        for (HashAlgorithm algorithm : values()) {
+            if (algorithm.name.equals(name)) {
+                return algorithm;
+            }
+        }
+
+        throw new RecursiveWalkException("Unknown hash algorithm '" + name + "'");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getDigestLength() {
+        return digestLength;
+    }
+
+    public FileHasher createHasher() {
+        return hasherFactory.get();
+    }
+
+    /**
+     * Get hash written for files, which cannot be read.
+     *
+     * @return zero hash of {@link #getDigestLength()} bytes.
+     */
+    public byte[] getErrorHash() {
+        return new byte[digestLength];
+    }
+}
@@ -0,0 +1,284 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent cache of file hashes, keyed by file path and validated by file metadata.
+ * <br>
+ * Cache file is an append-only log: a header with {@link #MAGIC} and algorithm name,
+ * followed by records of path, size, last modified time, file key and hash.
+ * The last record of a path wins.
+ * <br>
+ * The log is compacted when it is opened if it was written for another algorithm,
+ * has a broken tail or contains too many outdated records.
+ * A cache opened by {@link #openReadOnly} is never written and ignores new hashes.
+ */
+class HashCache implements Closeable {
+    private static final int MAGIC = 0x52574843;
+    private static final int STALE_RECORDS_FACTOR = 2;
+    private static final int MAX_STRING_LENGTH = 1 << 20;
+
+    private final Path file;
+    private final HashAlgorithm algorithm;
+    private final Map<String, Entry> entries;
+    /**
+     * Output of the log or <strong>null</strong> for a read-only cache.
+     */
+    private DataOutputStream output;
+
+    private HashCache(Path file, HashAlgorithm algorithm) {
+        this.file = file;
+        this.algorithm = algorithm;
+
+        entries = new HashMap<>();
+    }
+
+    /**
+     * Open cache <strong>file</strong> for hashes of <strong>algorithm</strong>, creating it if absent.
+     *
+     * @param file a cache file.
+     * @param algorithm algorithm of cached hashes.
+     * @return opened cache.
+     * @throws RecursiveWalkException when cache file cannot be read or written.
+     */
+    static HashCache open(Path file, HashAlgorithm algorithm) throws RecursiveWalkException {
+        HashCache cache = new HashCache(file, algorithm);
+
+        try {
+            if (!cache.load()) {
+                cache.compact();
+            }
+
+            cache.output = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(file, StandardOpenOption.APPEND)));
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot open hash cache '" + file + "'", e);
+        }
+
+        return cache;
+    }
+
+    /**
+     * Open cache <strong>file</strong> for hashes of <strong>algorithm</strong> without writing it.
+     * <br>
+     * A missing cache or a cache of another algorithm is empty, records of a broken tail are skipped.
+     *
+     * @param file a cache file.
+     * @param algorithm algorithm of cached hashes.
+     * @return opened cache.
+     * @throws RecursiveWalkException when cache file cannot be read.
+     */
+    static HashCache openReadOnly(Path file, HashAlgorithm algorithm) throws RecursiveWalkException {
+        HashCache cache = new HashCache(file, algorithm);
+
+        try {
+            cache.load();
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot open hash cache '" + file + "'", e);
+        }
+
+        return cache;
+    }
+
+    /**
+     * Get cached hash of <strong>file</strong> if its metadata has not been changed.
+     *
+     * @param file a path of file.
+     * @param attributes current attributes of file.
+     * @return cached hash or <strong>null</strong> if there is no valid one.
+     */
+    synchronized byte[] get(String file, BasicFileAttributes attributes) {
+        Entry entry = entries.get(file);
+
+        if (entry != null && entry.matches(attributes)) {
+            return entry.hash;
+        }
+
+        return null;
+    }
+
+    /**
+     * Get size of <strong>file</strong> when its last hash was cached.
+     *
+     * @param file a path of file.
+     * @return cached size or <strong>-1</strong> if file is not cached.
+     */
+    synchronized long getSize(String file) {
+        Entry entry = entries.get(file);
+
+        return entry == null ? -1 : entry.size;
+    }
+
+    /**
+     * Put hash of <strong>file</strong> to the cache and append it to the log, unless the cache is read-only.
+     *
+     * @param file a path of file.
+     * @param attributes attributes of file taken before hashing.
+     * @param hash hash of file.
+     * @throws RecursiveWalkException when record cannot be written.
+     */
+    synchronized void put(String file, BasicFileAttributes attributes, byte[] hash) throws RecursiveWalkException {
+        if (output == null) {
+            return;
+        }
+
+        Entry entry = new Entry(attributes, hash);
+        entries.put(file, entry);
+
+        try {
+            writeRecord(output, file, entry);
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot write to hash cache '" + this.file + "'", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws RecursiveWalkException {
+        if (output == null) {
+            return;
+        }
+
+        try {
+            output.close();
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot write to hash cache '" + file + "'", e);
+        }
+    }
+
+    /**
+     * Load records from cache file.
+     *
+     * @return <strong>true</strong> if cache file can be appended as is.
+     * @throws IOException when cache file cannot be read.
+     */
+    private boolean load() throws IOException {
+        long records = 0;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC || !algorithm.getName().equals(readString(input))) {
+                return false;
+            }
+
+            while (true) {
+                // Only the end of file before the first byte of a record is the end of the log.
+                input.mark(1);
+                if (input.read() < 0) {
+                    break;
+                }
+                input.reset();
+
+                String path = readString(input);
+                long size = input.readLong();
+                long lastModified = input.readLong();
+                String fileKey = readString(input);
+                byte[] hash = new byte[input.readUnsignedByte()];
+                input.readFully(hash);
+
+                entries.put(path, new Entry(size, lastModified, fileKey, hash));
+                records++;
+            }
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (EOFException | StreamCorruptedException e) {
+            // Broken tail of interrupted run, rewritten before anything is appended after it.
+            return false;
+        }
+
+        return records <= STALE_RECORDS_FACTOR * entries.size();
+    }
+
+    private void compact() throws IOException {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream compacted = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporaryFile)))) {
+            compacted.writeInt(MAGIC);
+            writeString(compacted, algorithm.getName());
+
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                writeRecord(compacted, entry.getKey(), entry.getValue());
+            }
+        }
+
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeRecord(DataOutputStream output, String file, Entry entry) throws IOException {
+        writeString(output, file);
+        output.writeLong(entry.size);
+        output.writeLong(entry.lastModified);
+        writeString(output, entry.fileKey);
+        output.writeByte(entry.hash.length);
+        output.write(entry.hash);
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+
+        if (length < 0 || length > MAX_STRING_LENGTH) {
+            throw new StreamCorruptedException("Broken record in hash cache");
+        }
+
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long lastModified;
+        private final String fileKey;
+        private final byte[] hash;
+
+        private Entry(long size, long lastModified, String fileKey, byte[] hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.fileKey = fileKey;
+            this.hash = hash;
+        }
+
+        private Entry(BasicFileAttributes attributes, byte[] hash) {
+            this(attributes.size(), getLastModified(attributes), getFileKey(attributes), hash);
+        }
+
+        private boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size()
+                    && lastModified == getLastModified(attributes)
+                    && fileKey.equals(getFileKey(attributes));
+        }
+
+        private static long getLastModified(BasicFileAttributes attributes) {
+            return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        }
+
+        private static String getFileKey(BasicFileAttributes attributes) {
+            return Objects.toString(attributes.fileKey(), "");
+        }
+    }
+}
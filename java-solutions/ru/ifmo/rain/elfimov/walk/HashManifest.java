@@ -0,0 +1,229 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A binary manifest of file hashes, written by {@link ManifestOutputWriter} and read by {@link WalkVerify}.
+ * <br>
+ * The manifest consists of:
+ * <ul>
+ *     <li>a header: {@link #MAGIC}, {@link #VERSION} byte, algorithm name and restart interval;</li>
+ *     <li>entries: length of the prefix shared with the previous path, length of the rest of the path
+ *     shifted left by one with the lowest bit set for a file, which could not be read,
+ *     the rest of the path in UTF-8 and the hash of the algorithm digest length;</li>
+ *     <li>an index: offsets of blocks, each starting from an entry with the whole path
+ *     after every {@link #RESTART_INTERVAL} entries;</li>
+ *     <li>a trailer: number of entries, number of blocks, offset of the index and {@link #MAGIC}.</li>
+ * </ul>
+ * Lengths are unsigned LEB128 varints, other numbers are big-endian.
+ * The index and the trailer are written only after a successful walk, so a manifest without them is incomplete.
+ * Blocks can be decoded independently, so the manifest is memory-mapped and read by many threads at once.
+ * It is mapped as one buffer, so a manifest larger than 2 GiB cannot be read.
+ */
+class HashManifest {
+    static final int MAGIC = 0x52574d46;
+    static final int VERSION = 2;
+    static final int RESTART_INTERVAL = 64;
+    static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+    static final int MAX_VARINT_LENGTH = 5;
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private HashAlgorithm algorithm;
+    private long entryCount;
+    private int[] blockOffsets;
+    private int indexOffset;
+
+    private HashManifest(Path file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Memory-map manifest <strong>file</strong> and read its header and index.
+     *
+     * @param file a manifest file.
+     * @return opened manifest.
+     * @throws RecursiveWalkException when manifest cannot be read or is corrupted.
+     */
+    static HashManifest open(Path file) throws RecursiveWalkException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new RecursiveWalkException("Manifest '" + file + "' is larger than 2 GiB");
+            }
+
+            // The mapping stays valid after the channel is closed.
+            HashManifest manifest = new HashManifest(file,
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            manifest.readIndex();
+
+            return manifest;
+        } catch (RecursiveWalkException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot read manifest '" + file + "'", e);
+        }
+    }
+
+    private void readIndex() throws RecursiveWalkException {
+        try {
+            ByteBuffer header = buffer.duplicate();
+
+            if (header.getInt() != MAGIC || header.get() != VERSION) {
+                throw corrupted(null);
+            }
+
+            byte[] name = new byte[getVarint(header)];
+            header.get(name);
+            algorithm = HashAlgorithm.forName(new String(name, StandardCharsets.UTF_8));
+            getVarint(header);
+
+            if (buffer.limit() - header.position() < TRAILER_SIZE
+                    || buffer.getInt(buffer.limit() - Integer.BYTES) != MAGIC) {
+                throw new RecursiveWalkException("Manifest '" + file + "' is incomplete: the walk was aborted");
+            }
+
+            ByteBuffer trailer = buffer.duplicate().position(buffer.limit() - TRAILER_SIZE);
+            entryCount = trailer.getLong();
+            int blockCount = trailer.getInt();
+            indexOffset = Math.toIntExact(trailer.getLong());
+
+            if (blockCount < 0 || indexOffset < header.position()
+                    || (long) blockCount * Long.BYTES != buffer.limit() - TRAILER_SIZE - indexOffset) {
+                throw corrupted(null);
+            }
+
+            ByteBuffer index = buffer.duplicate().position(indexOffset);
+            blockOffsets = new int[blockCount];
+
+            for (int i = 0; i < blockCount; i++) {
+                blockOffsets[i] = Math.toIntExact(index.getLong());
+
+                if (blockOffsets[i] < header.position() || blockOffsets[i] > indexOffset
+                        || i > 0 && blockOffsets[i] < blockOffsets[i - 1]) {
+                    throw corrupted(null);
+                }
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException | ArithmeticException e) {
+            throw corrupted(e);
+        }
+    }
+
+    /**
+     * Decode entries of <strong>block</strong>, passing them to <strong>consumer</strong> in manifest order.
+     * <br>
+     * Different blocks can be read concurrently.
+     *
+     * @param block an index of block.
+     * @param consumer a consumer of entries.
+     * @throws RecursiveWalkException when the block is corrupted or thrown by the consumer.
+     */
+    void readBlock(int block, EntryConsumer consumer) throws RecursiveWalkException {
+        int end = block + 1 < blockOffsets.length ? blockOffsets[block + 1] : indexOffset;
+        ByteBuffer entries = buffer.duplicate().position(blockOffsets[block]).limit(end);
+        byte[] path = new byte[256];
+        int pathLength = 0;
+
+        try {
+            while (entries.hasRemaining()) {
+                int shared = getVarint(entries);
+                int status = getVarint(entries);
+                int length = status >>> 1;
+
+                if (shared > pathLength) {
+                    throw corrupted(null);
+                }
+
+                if (path.length < shared + length) {
+                    byte[] grown = new byte[Math.max(shared + length, path.length * 2)];
+                    System.arraycopy(path, 0, grown, 0, shared);
+                    path = grown;
+                }
+
+                entries.get(path, shared, length);
+                pathLength = shared + length;
+
+                byte[] hash = new byte[algorithm.getDigestLength()];
+                entries.get(hash);
+
+                consumer.accept(new String(path, 0, pathLength, StandardCharsets.UTF_8), hash, (status & 1) != 0);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw corrupted(e);
+        }
+    }
+
+    HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    long getEntryCount() {
+        return entryCount;
+    }
+
+    int getBlockCount() {
+        return blockOffsets.length;
+    }
+
+    /**
+     * Put unsigned varint <strong>value</strong> to <strong>bytes</strong> at <strong>offset</strong>.
+     *
+     * @param bytes an array with at least {@link #MAX_VARINT_LENGTH} bytes after <strong>offset</strong>.
+     * @param offset offset of the first byte.
+     * @param value a non-negative value.
+     * @return offset after the last byte.
+     */
+    static int putVarint(byte[] bytes, int offset, int value) {
+        while ((value & ~0x7f) != 0) {
+            bytes[offset++] = (byte) (value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+
+        return offset;
+    }
+
+    private int getVarint(ByteBuffer bytes) throws RecursiveWalkException {
+        int value = 0;
+
+        for (int shift = 0; shift < 7 * MAX_VARINT_LENGTH; shift += 7) {
+            byte b = bytes.get();
+            value |= (b & 0x7f) << shift;
+
+            if (b >= 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+
+        throw corrupted(null);
+    }
+
+    private RecursiveWalkException corrupted(Exception cause) {
+        return new RecursiveWalkException("Manifest '" + file + "' is corrupted", cause);
+    }
+
+    /**
+     * A consumer of manifest entries.
+     */
+    @FunctionalInterface
+    interface EntryConsumer {
+        /**
+         * Accept an entry of <strong>path</strong>.
+         *
+         * @param path a path of the entry.
+         * @param hash a hash of the file.
+         * @param failed <strong>true</strong> if the file could not be read when the manifest was written.
+         * @throws RecursiveWalkException when the entry cannot be processed.
+         */
+        void accept(String path, byte[] hash, boolean failed) throws RecursiveWalkException;
+    }
+}
@@ -0,0 +1,332 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A writer of info lines, producing the same bytes as <strong>"%s %s%n"</strong>
+ * format of hex hash and file name written in UTF-8.
+ * <br>
+ * Hex digits and encoded file names are put straight into one direct {@link ByteBuffer},
+ * which is written to the channel when it is full. Writing a line does not allocate.
+ * <br>
+ * Each chunk line follows the line of its file and is written as
+ * <strong>"\t%s %d %d%n"</strong> format of hex chunk hash, chunk offset and chunk length.
+ * <br>
+ * The writer is not thread-safe. {@link ManifestOutputWriter} writes the same results in a binary format.
+ */
+class HashOutputWriter implements ResultWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_DECIMAL_LENGTH = 19;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final WritableByteChannel channel;
+    private final boolean closeChannel;
+    private final WalkMetrics metrics;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder;
+    private CharBuffer chars;
+    private long written;
+
+    HashOutputWriter(WritableByteChannel channel, boolean closeChannel, WalkMetrics metrics) {
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+        this.metrics = metrics;
+
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        chars = CharBuffer.allocate(256);
+    }
+
+    /**
+     * Open a writer to <strong>file</strong>, creating or truncating it.
+     *
+     * @param file an output file.
+     * @param metrics metrics to record write stage to.
+     * @return opened writer.
+     * @throws IOException when file cannot be opened for writing.
+     */
+    static HashOutputWriter open(Path file, WalkMetrics metrics) throws IOException {
+        return new HashOutputWriter(FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), true, metrics);
+    }
+
+    /**
+     * Open a writer to <strong>file</strong>, truncating it to <strong>offset</strong> bytes
+     * and writing after them.
+     *
+     * @param file an output file.
+     * @param offset length of the output to keep.
+     * @param metrics metrics to record write stage to.
+     * @return opened writer.
+     * @throws IOException when file cannot be opened for writing or is shorter than <strong>offset</strong>.
+     */
+    static HashOutputWriter openAt(Path file, long offset, WalkMetrics metrics) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+        try {
+            if (channel.size() < offset) {
+                throw new IOException("Output file '" + file + "' is shorter than " + offset + " bytes");
+            }
+
+            channel.truncate(offset);
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        HashOutputWriter writer = new HashOutputWriter(channel, true, metrics);
+        writer.written = offset;
+
+        return writer;
+    }
+
+    /**
+     * Open a writer to standard output, which is left open when the writer is closed.
+     * <br>
+     * Buffered lines are written as soon as the buffer is full or {@link #flush()} is called,
+     * so a slow reader of the output blocks the writer.
+     *
+     * @param metrics metrics to record write stage to.
+     * @return opened writer.
+     */
+    static HashOutputWriter openStandardOutput(WalkMetrics metrics) {
+        return new HashOutputWriter(new FileOutputStream(FileDescriptor.out).getChannel(), false, metrics);
+    }
+
+    /**
+     * Write info line of <strong>result</strong>, followed by lines of its chunks.
+     *
+     * @param result a result to write.
+     * @throws RecursiveWalkException when lines cannot be written.
+     */
+    @Override
+    public void write(HashResult result) throws RecursiveWalkException {
+        write(result.getHash(), result.getFile());
+
+        for (FileChunk chunk : result.getChunks()) {
+            writeChunk(chunk);
+        }
+    }
+
+    /**
+     * Write info line with <strong>hash</strong> of <strong>file</strong>.
+     *
+     * @param hash hash of the file.
+     * @param file name of the file.
+     * @throws RecursiveWalkException when the line cannot be written.
+     */
+    void write(byte[] hash, String file) throws RecursiveWalkException {
+        long start = System.nanoTime();
+
+        try {
+            ensureRemaining(hash.length * 2 + 1);
+            putHex(hash);
+            buffer.put((byte) ' ');
+
+            writeString(file);
+
+            ensureRemaining(LINE_SEPARATOR.length);
+            buffer.put(LINE_SEPARATOR);
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot write to output file because of some I/O error", e);
+        }
+
+        metrics.recordStage(WalkMetrics.Stage.WRITE, start);
+    }
+
+    /**
+     * Write an empty line.
+     *
+     * @throws RecursiveWalkException when the line cannot be written.
+     */
+    void writeEmptyLine() throws RecursiveWalkException {
+        try {
+            ensureRemaining(LINE_SEPARATOR.length);
+            buffer.put(LINE_SEPARATOR);
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot write to output file because of some I/O error", e);
+        }
+    }
+
+    /**
+     * Write info line of <strong>chunk</strong> of the last written file.
+     *
+     * @param chunk a chunk of file.
+     * @throws RecursiveWalkException when the line cannot be written.
+     */
+    void writeChunk(FileChunk chunk) throws RecursiveWalkException {
+        try {
+            ensureRemaining(chunk.getHash().length * 2 + 2 * MAX_DECIMAL_LENGTH + 3 + LINE_SEPARATOR.length);
+
+            buffer.put((byte) '\t');
+            putHex(chunk.getHash());
+            buffer.put((byte) ' ');
+            putDecimal(chunk.getOffset());
+            buffer.put((byte) ' ');
+            putDecimal(chunk.getLength());
+            buffer.put(LINE_SEPARATOR);
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot write to output file because of some I/O error", e);
+        }
+    }
+
+    /**
+     * Write <strong>length</strong> raw bytes of <strong>bytes</strong> starting from <strong>offset</strong>.
+     *
+     * @param bytes bytes to write.
+     * @param offset offset of the first byte.
+     * @param length number of bytes.
+     * @throws RecursiveWalkException when bytes cannot be written.
+     */
+    void writeBytes(byte[] bytes, int offset, int length) throws RecursiveWalkException {
+        try {
+            while (length > 0) {
+                ensureRemaining(1);
+
+                int count = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, count);
+                offset += count;
+                length -= count;
+            }
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot write to output file because of some I/O error", e);
+        }
+    }
+
+    /**
+     * Get length of the output, including buffered bytes.
+     *
+     * @return offset of the next written byte.
+     */
+    long getPosition() {
+        return written + buffer.position();
+    }
+
+    private void putHex(byte[] bytes) {
+        for (byte b : bytes) {
+            buffer.put(HEX_DIGITS[(b >> 4) & 0xf]);
+            buffer.put(HEX_DIGITS[b & 0xf]);
+        }
+    }
+
+    private void putDecimal(long value) {
+        int start = buffer.position();
+
+        do {
+            buffer.put((byte) ('0' + value % 10));
+            value /= 10;
+        } while (value > 0);
+
+        for (int left = start, right = buffer.position() - 1; left < right; left++, right--) {
+            byte b = buffer.get(left);
+            buffer.put(left, buffer.get(right));
+            buffer.put(right, b);
+        }
+    }
+
+    private void writeString(String string) throws IOException {
+        if (chars.capacity() < string.length()) {
+            chars = CharBuffer.allocate(Math.max(string.length(), chars.capacity() * 2));
+        }
+
+        chars.clear();
+        string.getChars(0, string.length(), chars.array(), 0);
+        chars.limit(string.length());
+
+        encoder.reset();
+        CoderResult result;
+        while (!(result = encoder.encode(chars, buffer, true)).isUnderflow()) {
+            checkOverflow(result);
+        }
+        while (!(result = encoder.flush(buffer)).isUnderflow()) {
+            checkOverflow(result);
+        }
+    }
+
+    private void checkOverflow(CoderResult result) throws IOException {
+        if (result.isOverflow()) {
+            flushBuffer();
+        } else {
+            result.throwException();
+        }
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flushBuffer();
+        }
+    }
+
+    /**
+     * Write all buffered bytes to the channel.
+     *
+     * @throws RecursiveWalkException when bytes cannot be written.
+     */
+    @Override
+    public void flush() throws RecursiveWalkException {
+        try {
+            flushBuffer();
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot write to output file because of some I/O error", e);
+        }
+    }
+
+    /**
+     * Write all buffered bytes and force them to the storage device, if the output is a file.
+     *
+     * @return length of the written output.
+     * @throws RecursiveWalkException when bytes cannot be written.
+     */
+    long force() throws RecursiveWalkException {
+        try {
+            flushBuffer();
+
+            if (channel instanceof FileChannel) {
+                ((FileChannel) channel).force(false);
+            }
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot write to output file because of some I/O error", e);
+        }
+
+        return written;
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws RecursiveWalkException {
+        try {
+            try {
+                flushBuffer();
+            } finally {
+                if (closeChannel) {
+                    channel.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot write to output file because of some I/O error", e);
+        }
+    }
+}
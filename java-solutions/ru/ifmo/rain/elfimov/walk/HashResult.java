@@ -0,0 +1,61 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A hash of one visited file with hashes of its chunks, waiting to be written.
+ */
+class HashResult {
+    private final byte[] hash;
+    private final String file;
+    private final List<FileChunk> chunks;
+    private final boolean failed;
+
+    private HashResult(byte[] hash, String file, List<FileChunk> chunks, boolean failed) {
+        this.hash = hash;
+        this.file = file;
+        this.chunks = chunks;
+        this.failed = failed;
+    }
+
+    HashResult(byte[] hash, String file, List<FileChunk> chunks) {
+        this(hash, file, chunks, false);
+    }
+
+    HashResult(byte[] hash, String file) {
+        this(hash, file, Collections.emptyList());
+    }
+
+    /**
+     * Creating a new {@link HashResult} instance for <strong>file</strong>, which cannot be read.
+     *
+     * @param errorHash the zero hash.
+     * @param file a name of failed file.
+     * @return created result.
+     */
+    static HashResult failed(byte[] errorHash, String file) {
+        return new HashResult(errorHash, file, Collections.emptyList(), true);
+    }
+
+    byte[] getHash() {
+        return hash;
+    }
+
+    /**
+     * Check whether the hash is the zero hash of a file, which cannot be read.
+     *
+     * @return <strong>true</strong> if the file has not been read.
+     */
+    boolean isFailed() {
+        return failed;
+    }
+
+    String getFile() {
+        return file;
+    }
+
+    List<FileChunk> getChunks() {
+        return chunks;
+    }
+}
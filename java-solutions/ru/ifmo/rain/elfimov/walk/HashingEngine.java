@@ -0,0 +1,77 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A consumer of visited files, hashing them and writing results in the visit order.
+ */
+interface HashingEngine extends Closeable {
+    /**
+     * Mark the start of the next input line. Files passed after that belong to the new line.
+     *
+     * @throws RecursiveWalkException when output cannot be written.
+     */
+    default void startRoot() throws RecursiveWalkException {
+    }
+
+    /**
+     * Mark the start of top-level entry of the current root.
+     *
+     * @param ordinal index of the entry in the listing order of the root.
+     * @throws RecursiveWalkException when output cannot be written.
+     */
+    default void startEntry(int ordinal) throws RecursiveWalkException {
+    }
+
+    /**
+     * Hash <strong>file</strong> and write its info line.
+     *
+     * @param file a file to hash.
+     * @param attributes attributes of the file, read by walker.
+     * @throws RecursiveWalkException when the line cannot be written or the file cannot be hashed in fail-fast mode.
+     */
+    void hashFile(Path file, BasicFileAttributes attributes) throws RecursiveWalkException;
+
+    /**
+     * Write an info line with zero hash for <strong>file</strong> which cannot be visited.
+     *
+     * @param file a name of failed file.
+     * @param cause cause of failure.
+     * @throws RecursiveWalkException when the line cannot be written.
+     */
+    void hashFailed(String file, Exception cause) throws RecursiveWalkException;
+
+    /**
+     * Hash the whole standard input and write its info line with <strong>name</strong>.
+     *
+     * @param name a name of standard input to write.
+     * @throws RecursiveWalkException when standard input cannot be hashed or the line cannot be written.
+     */
+    void hashStandardInput(String name) throws RecursiveWalkException;
+
+    /**
+     * Write info lines of files completed so far to the output without waiting for files in flight.
+     *
+     * @throws RecursiveWalkException when some file has not been hashed or written.
+     */
+    void flush() throws RecursiveWalkException;
+
+    /**
+     * Wait for all files submitted so far and write their info lines to the output.
+     *
+     * @throws RecursiveWalkException when some file has not been hashed or written.
+     */
+    default void drain() throws RecursiveWalkException {
+        flush();
+    }
+
+    /**
+     * Wait for all submitted files and write their remaining info lines.
+     *
+     * @throws RecursiveWalkException when some file has not been hashed or written.
+     */
+    @Override
+    void close() throws RecursiveWalkException;
+}
@@ -0,0 +1,128 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A {@link HashingEngine}, writing an index of info lines produced by another engine.
+ * <br>
+ * Output is split into units: the root of an input line and each top-level entry of the root.
+ * For each unit with results, index has a line <strong>"line unit count"</strong>,
+ * where unit <strong>0</strong> is the root itself and unit <strong>k + 1</strong> is its k-th entry
+ * in the listing order, and count is the number of records of {@link ShardOutputWriter}.
+ * {@link ShardMerge} uses indexes to restore the order of sharded outputs.
+ */
+class IndexingHashingEngine implements HashingEngine {
+    static final String INDEX_SUFFIX = ".index";
+
+    private final HashingEngine engine;
+    private final Path indexFile;
+    private final BufferedWriter index;
+    private long line;
+    private long unit;
+    private long count;
+
+    private IndexingHashingEngine(HashingEngine engine, Path indexFile, BufferedWriter index) {
+        this.engine = engine;
+        this.indexFile = indexFile;
+        this.index = index;
+
+        line = -1;
+        unit = 0;
+        count = 0;
+    }
+
+    /**
+     * Creating a new {@link IndexingHashingEngine} instance, writing index of <strong>outputFile</strong>.
+     *
+     * @param engine an engine to index.
+     * @param outputFile an output file, index is written next to it with {@link #INDEX_SUFFIX}.
+     * @return created engine.
+     * @throws RecursiveWalkException when index file cannot be created.
+     */
+    static IndexingHashingEngine open(HashingEngine engine, Path outputFile) throws RecursiveWalkException {
+        Path indexFile = outputFile.resolveSibling(outputFile.getFileName() + INDEX_SUFFIX);
+
+        try {
+            return new IndexingHashingEngine(engine, indexFile, Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot create index file '" + indexFile + "'", e);
+        }
+    }
+
+    @Override
+    public void startRoot() throws RecursiveWalkException {
+        finishUnit();
+        line++;
+        unit = 0;
+
+        engine.startRoot();
+    }
+
+    @Override
+    public void startEntry(int ordinal) throws RecursiveWalkException {
+        finishUnit();
+        unit = ordinal + 1L;
+
+        engine.startEntry(ordinal);
+    }
+
+    @Override
+    public void hashFile(Path file, BasicFileAttributes attributes) throws RecursiveWalkException {
+        engine.hashFile(file, attributes);
+        count++;
+    }
+
+    @Override
+    public void hashFailed(String file, Exception cause) throws RecursiveWalkException {
+        engine.hashFailed(file, cause);
+        count++;
+    }
+
+    @Override
+    public void hashStandardInput(String name) throws RecursiveWalkException {
+        engine.hashStandardInput(name);
+        count++;
+    }
+
+    @Override
+    public void flush() throws RecursiveWalkException {
+        engine.flush();
+    }
+
+    @Override
+    public void drain() throws RecursiveWalkException {
+        engine.drain();
+    }
+
+    @Override
+    public void close() throws RecursiveWalkException {
+        try (index) {
+            engine.close();
+            finishUnit();
+        } catch (RecursiveWalkException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot write index file '" + indexFile + "'", e);
+        }
+    }
+
+    private void finishUnit() throws RecursiveWalkException {
+        if (count == 0) {
+            return;
+        }
+
+        try {
+            index.write(line + " " + unit + " " + count);
+            index.newLine();
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot write index file '" + indexFile + "'", e);
+        }
+
+        count = 0;
+    }
+}
@@ -0,0 +1,78 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of latencies in nanoseconds with power of two buckets.
+ * <br>
+ * Bucket <strong>i</strong> counts latencies in [2<sup>i - 1</sup>, 2<sup>i</sup>) nanoseconds,
+ * bucket <strong>0</strong> counts zero latencies.
+ */
+class LatencyHistogram {
+    private static final int BUCKETS = Long.SIZE;
+
+    private final AtomicLongArray buckets;
+    private final LongAdder count;
+    private final LongAdder total;
+
+    LatencyHistogram() {
+        buckets = new AtomicLongArray(BUCKETS);
+        count = new LongAdder();
+        total = new LongAdder();
+    }
+
+    void record(long nanos) {
+        long latency = Math.max(nanos, 0);
+
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(latency));
+        count.increment();
+        total.add(latency);
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    double getMeanNanos() {
+        long currentCount = count.sum();
+
+        return currentCount == 0 ? 0 : (double) total.sum() / currentCount;
+    }
+
+    /**
+     * Get upper bound of the bucket containing <strong>quantile</strong> of latencies.
+     *
+     * @param quantile a quantile from 0 to 1.
+     * @return latency in nanoseconds, not less than the real quantile.
+     */
+    double getQuantileNanos(double quantile) {
+        long[] snapshot = getBuckets();
+        long currentCount = 0;
+        for (long bucket : snapshot) {
+            currentCount += bucket;
+        }
+
+        long rank = (long) Math.ceil(quantile * currentCount);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+
+            if (seen >= rank && seen > 0) {
+                return i == 0 ? 0 : Math.pow(2, i);
+            }
+        }
+
+        return 0;
+    }
+
+    long[] getBuckets() {
+        long[] result = new long[BUCKETS];
+
+        for (int i = 0; i < BUCKETS; i++) {
+            result[i] = buckets.get(i);
+        }
+
+        return result;
+    }
+}
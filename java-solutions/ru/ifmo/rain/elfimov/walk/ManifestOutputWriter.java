@@ -0,0 +1,147 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A writer of results to a binary {@link HashManifest} instead of info lines.
+ * <br>
+ * Each path is written as the length of the prefix shared with the previous path and the rest of it,
+ * so a directory of a walked tree is stored once per block. The index is written when the writer is closed
+ * after {@link #finish()}, so a manifest of an aborted walk has no valid trailer and is never read.
+ * <br>
+ * The writer is not thread-safe.
+ */
+class ManifestOutputWriter implements ResultWriter {
+    private final HashOutputWriter output;
+    private final byte[] lengths;
+    private byte[] previous;
+    private long entries;
+    private long[] blockOffsets;
+    private int blocks;
+    private boolean finished;
+
+    private ManifestOutputWriter(HashOutputWriter output) {
+        this.output = output;
+
+        lengths = new byte[2 * HashManifest.MAX_VARINT_LENGTH];
+        previous = new byte[0];
+        entries = 0;
+        blockOffsets = new long[16];
+        blocks = 0;
+        finished = false;
+    }
+
+    /**
+     * Open a writer of manifest <strong>file</strong> of <strong>algorithm</strong> hashes,
+     * creating or truncating it.
+     *
+     * @param file a manifest file.
+     * @param algorithm algorithm of written hashes.
+     * @param metrics metrics to record write stage to.
+     * @return opened writer.
+     * @throws IOException when file cannot be opened or header cannot be written.
+     */
+    static ManifestOutputWriter open(Path file, HashAlgorithm algorithm, WalkMetrics metrics) throws IOException {
+        ManifestOutputWriter writer = new ManifestOutputWriter(HashOutputWriter.open(file, metrics));
+
+        try {
+            writer.writeHeader(algorithm);
+        } catch (RecursiveWalkException e) {
+            writer.close();
+            throw e;
+        }
+
+        return writer;
+    }
+
+    private void writeHeader(HashAlgorithm algorithm) throws RecursiveWalkException {
+        byte[] name = algorithm.getName().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + 1 + 2 * HashManifest.MAX_VARINT_LENGTH + name.length);
+
+        header.putInt(HashManifest.MAGIC).put((byte) HashManifest.VERSION);
+        header.position(HashManifest.putVarint(header.array(), header.position(), name.length));
+        header.put(name);
+        header.position(HashManifest.putVarint(header.array(), header.position(), HashManifest.RESTART_INTERVAL));
+
+        output.writeBytes(header.array(), 0, header.position());
+    }
+
+    /**
+     * Write an entry of <strong>result</strong>, marking the failed ones,
+     * so they are not mistaken for files with such a hash.
+     *
+     * @param result a result to write.
+     * @throws RecursiveWalkException when entry cannot be written.
+     */
+    @Override
+    public void write(HashResult result) throws RecursiveWalkException {
+        byte[] path = result.getFile().getBytes(StandardCharsets.UTF_8);
+        byte[] hash = result.getHash();
+        int shared = 0;
+
+        if (entries % HashManifest.RESTART_INTERVAL == 0) {
+            if (blocks == blockOffsets.length) {
+                blockOffsets = Arrays.copyOf(blockOffsets, blocks * 2);
+            }
+            blockOffsets[blocks++] = output.getPosition();
+        } else {
+            int limit = Math.min(previous.length, path.length);
+
+            while (shared < limit && previous[shared] == path[shared]) {
+                shared++;
+            }
+        }
+
+        int length = HashManifest.putVarint(lengths, 0, shared);
+        length = HashManifest.putVarint(lengths, length, (path.length - shared) << 1 | (result.isFailed() ? 1 : 0));
+
+        output.writeBytes(lengths, 0, length);
+        output.writeBytes(path, shared, path.length - shared);
+        output.writeBytes(hash, 0, hash.length);
+
+        previous = path;
+        entries++;
+    }
+
+    @Override
+    public void flush() throws RecursiveWalkException {
+        output.flush();
+    }
+
+    @Override
+    public void finish() {
+        finished = true;
+    }
+
+    /**
+     * Write the index and the trailer if the walk was finished and close the manifest.
+     *
+     * @throws RecursiveWalkException when manifest cannot be written.
+     */
+    @Override
+    public void close() throws RecursiveWalkException {
+        try {
+            if (finished) {
+                writeFooter();
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    private void writeFooter() throws RecursiveWalkException {
+        ByteBuffer footer = ByteBuffer.allocate(blocks * Long.BYTES + HashManifest.TRAILER_SIZE);
+        long indexOffset = output.getPosition();
+
+        for (int i = 0; i < blocks; i++) {
+            footer.putLong(blockOffsets[i]);
+        }
+        footer.putLong(entries).putInt(blocks).putLong(indexOffset).putInt(HashManifest.MAGIC);
+
+        output.writeBytes(footer.array(), 0, footer.position());
+    }
+}
@@ -0,0 +1,201 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link HashingEngine} hashing files in a fixed pool of worker threads.
+ * <br>
+ * Walker thread is blocked when there are too many files in flight,
+ * so at most <strong>threads</strong> * {@link #IN_FLIGHT_PER_THREAD} results are kept in memory.
+ * Info lines are written in the visit order through {@link ReorderBuffer}.
+ * <br>
+ * With {@link #withVirtualThreads} each file is hashed in its own virtual thread, and the number of files
+ * in flight bounds the number of open file descriptors instead of memory for results.
+ * <br>
+ * The first failure stops the walk as in {@link SequentialHashingEngine}.
+ */
+class ParallelHashingEngine implements HashingEngine {
+    private static final int IN_FLIGHT_PER_THREAD = 16;
+
+    private final FileHashCalculator calculator;
+    private final ExecutorService executorService;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final ReorderBuffer reorderBuffer;
+    private long nextSequence;
+
+    private volatile RecursiveWalkException failure;
+    private boolean failureThrown;
+
+    ParallelHashingEngine(ResultWriter writer, FileHashCalculator calculator, int threads) {
+        this(writer, calculator, Executors.newFixedThreadPool(threads), threads * IN_FLIGHT_PER_THREAD);
+    }
+
+    private ParallelHashingEngine(ResultWriter writer, FileHashCalculator calculator,
+                                  ExecutorService executorService, int maxInFlight) {
+        this.calculator = calculator;
+        this.executorService = executorService;
+        this.maxInFlight = maxInFlight;
+        inFlight = new Semaphore(maxInFlight);
+        reorderBuffer = new ReorderBuffer(writer, inFlight);
+
+        calculator.getMetrics().setQueueDepth(() -> maxInFlight - inFlight.availablePermits());
+        nextSequence = 0;
+    }
+
+    /**
+     * Creating a new {@link ParallelHashingEngine} instance, hashing each file in a new virtual thread.
+     * <br>
+     * Virtual threads are created by {@code Executors.newVirtualThreadPerTaskExecutor()},
+     * which is looked up at runtime, so the engine is available only on Java 21 or newer.
+     *
+     * @param writer a writer of info lines.
+     * @param calculator a calculator of file hashes.
+     * @param maxOpenFiles maximal number of files hashed at once.
+     * @return created engine.
+     * @throws RecursiveWalkException when virtual threads are not supported by the running JVM.
+     */
+    static ParallelHashingEngine withVirtualThreads(ResultWriter writer, FileHashCalculator calculator,
+                                                    int maxOpenFiles) throws RecursiveWalkException {
+        ExecutorService executorService;
+
+        try {
+            executorService = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RecursiveWalkException("Virtual threads are not supported by Java "
+                    + Runtime.version().feature() + ", Java 21 or newer is required", e);
+        } catch (InvocationTargetException e) {
+            throw new RecursiveWalkException("Cannot create virtual thread executor", e);
+        }
+
+        return new ParallelHashingEngine(writer, calculator, executorService, maxOpenFiles);
+    }
+
+    @Override
+    public void hashFile(Path file, BasicFileAttributes attributes) throws RecursiveWalkException {
+        long sequence = acquireSequence();
+
+        executorService.execute(() -> {
+            HashResult result = null;
+
+            try {
+                if (failure == null) {
+                    result = calculator.calculate(file, attributes);
+                }
+            } catch (RecursiveWalkException e) {
+                setFailure(e);
+            } catch (Throwable e) {
+                setFailure(new RecursiveWalkException("Cannot hash file '" + file + "'", e));
+            } finally {
+                // The sequence must be completed anyway, otherwise all next results wait for it forever.
+                complete(sequence, result);
+            }
+        });
+    }
+
+    @Override
+    public void hashStandardInput(String name) throws RecursiveWalkException {
+        long sequence = acquireSequence();
+        HashResult result = null;
+
+        try {
+            result = calculator.calculateStandardInput(name);
+        } finally {
+            complete(sequence, result);
+        }
+
+        checkFailure();
+    }
+
+    @Override
+    public void flush() throws RecursiveWalkException {
+        checkFailure();
+        reorderBuffer.flush();
+    }
+
+    @Override
+    public void drain() throws RecursiveWalkException {
+        checkFailure();
+
+        try {
+            // All permits are free only when every submitted result is written.
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RecursiveWalkException("Interrupted while waiting for hashing threads", e);
+        }
+
+        flush();
+    }
+
+    @Override
+    public void hashFailed(String file, Exception cause) throws RecursiveWalkException {
+        complete(acquireSequence(), calculator.getFailedResult(file, cause));
+        checkFailure();
+    }
+
+    @Override
+    public void close() throws RecursiveWalkException {
+        executorService.shutdown();
+
+        try {
+            while (!executorService.awaitTermination(1, TimeUnit.SECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new RecursiveWalkException("Interrupted while waiting for hashing threads", e);
+        }
+
+        checkFailure();
+    }
+
+    private long acquireSequence() throws RecursiveWalkException {
+        checkFailure();
+
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RecursiveWalkException("Interrupted while waiting for hashing threads", e);
+        }
+
+        return nextSequence++;
+    }
+
+    private void complete(long sequence, HashResult result) {
+        try {
+            // Failed files still occupy their sequence number to let next lines go.
+            reorderBuffer.complete(sequence, result);
+        } catch (RecursiveWalkException e) {
+            setFailure(e);
+        } catch (RuntimeException e) {
+            setFailure(new RecursiveWalkException("Cannot write result", e));
+        }
+    }
+
+    private synchronized void setFailure(RecursiveWalkException e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    private void checkFailure() throws RecursiveWalkException {
+        RecursiveWalkException currentFailure = failure;
+
+        // The walk is stopped by the first throw, so the same failure is not thrown again by close.
+        if (currentFailure != null && !failureThrown) {
+            failureThrown = true;
+            executorService.shutdownNow();
+            throw currentFailure;
+        }
+    }
+}
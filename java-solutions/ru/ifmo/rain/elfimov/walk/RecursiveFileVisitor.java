@@ -1,6 +1,5 @@
 package ru.ifmo.rain.elfimov.walk;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Path;
@@ -8,21 +7,81 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 
 public class RecursiveFileVisitor extends SimpleFileVisitor<Path> {
-    private final BufferedWriter writer;
+    private final HashingEngine engine;
+    private final WalkMetrics metrics;
+    private final String line;
+    private final Path root;
+    private final WalkFilter filter;
+    private final WalkShard shard;
+    private int entries;
+    private long lastVisitEnd;
 
-    RecursiveFileVisitor(BufferedWriter writer) {
-        this.writer = writer;
+    RecursiveFileVisitor(HashingEngine engine, WalkMetrics metrics, String line, Path root, WalkFilter filter,
+                         WalkShard shard) {
+        this.engine = engine;
+        this.metrics = metrics;
+        this.line = line;
+        this.root = root;
+        this.filter = filter;
+        this.shard = shard;
+
+        entries = 0;
+        lastVisitEnd = System.nanoTime();
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        if (root.equals(dir.getParent()) && !startEntry(dir)) {
+            return FileVisitResult.SKIP_SUBTREE;
+        }
+
+        return filter.acceptsDirectory(root, dir) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
     }
 
     @Override
     public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-        RecursiveWalk.writeCorrectInfo(file, writer);
+        metrics.recordStage(WalkMetrics.Stage.STAT, lastVisitEnd);
+
+        // Directories are passed here only at the maximal depth.
+        if (isAccepted(file) && !attrs.isDirectory() && filter.acceptsFile(root, file, attrs)) {
+            engine.hashFile(file, attrs);
+        }
+
+        lastVisitEnd = System.nanoTime();
         return FileVisitResult.CONTINUE;
     }
 
     @Override
     public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-        RecursiveWalk.writeExceptionInfo(file.toString(), writer);
+        metrics.recordStage(WalkMetrics.Stage.STAT, lastVisitEnd);
+
+        if (isAccepted(file) && filter.acceptsName(root, file)) {
+            engine.hashFailed(file.toString(), exc);
+        }
+
+        lastVisitEnd = System.nanoTime();
         return FileVisitResult.CONTINUE;
     }
+
+    private boolean isAccepted(Path file) throws RecursiveWalkException {
+        if (file.equals(root)) {
+            return shard.acceptsRootFile(line);
+        } else if (root.equals(file.getParent())) {
+            return startEntry(file);
+        }
+
+        return true;
+    }
+
+    private boolean startEntry(Path entry) throws RecursiveWalkException {
+        // Entries filtered out by shard are counted too, so all shards agree on ordinals.
+        int ordinal = entries++;
+
+        if (!shard.acceptsEntry(line, entry.getFileName().toString())) {
+            return false;
+        }
+
+        engine.startEntry(ordinal);
+        return true;
+    }
 }
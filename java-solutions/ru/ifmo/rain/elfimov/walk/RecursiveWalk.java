@@ -1,90 +1,192 @@
 package ru.ifmo.rain.elfimov.walk;
 
-import java.io.*;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 
 @SuppressWarnings("WeakerAccess")
 public class RecursiveWalk {
 
-    private static final String OUTPUT_FORMAT = "%08x %s%n";
     private static final Charset CHARSET = StandardCharsets.UTF_8;
 
     public void run(String[] args) throws RecursiveWalkException {
-        if (args == null || args.length != 2) {
-            throw new RecursiveWalkException("Usage: java RecursiveWalk <input file> <output file>");
-        } else {
-            try (BufferedReader inputReader = Files.newBufferedReader(Paths.get(args[0]), CHARSET)) {
-                try (BufferedWriter outputWriter = Files.newBufferedWriter(Paths.get(args[1]), CHARSET)) {
-                    String line;
-
-                    try {
-                        while ((line = inputReader.readLine()) != null) {
-                            try {
-                                Path path = Paths.get(line);
-                                Files.walkFileTree(path, new RecursiveFileVisitor(outputWriter));
-                            } catch (NullPointerException | InvalidPathException e) {
-                                writeExceptionInfo(line, outputWriter);
-                            }
-                        }
-                    } catch (IOException e) {
-                        throw new RecursiveWalkException("Cannot read input file because of some I/O error", e);
-                    }
-                } catch (IOException e) {
-                    throw new RecursiveWalkException("Cannot create writer to write output file", e);
-                } catch (NullPointerException | InvalidPathException e) {
-                    throw new RecursiveWalkException("Output file '" + args[1] + "' must be a correct file path", e);
+        WalkOptions options = WalkOptions.parse(args);
+        WalkMetrics metrics = new WalkMetrics();
+        WalkCheckpoint checkpoint = openCheckpoint(options);
+
+        Closeable registration = options.isJmx() ? metrics.register() : null;
+        Closeable progress = options.getProgressPeriod() > 0 ? metrics.startProgress(options.getProgressPeriod()) : null;
+
+        try (registration; progress; BufferedReader inputReader = openInput(options)) {
+            try (ResultWriter outputWriter = openOutput(options, checkpoint, metrics)) {
+                try (FailurePolicy failurePolicy = openFailurePolicy(options);
+                     HashCache cache = openCache(options);
+                     TreeWalker walker = createWalker(options, outputWriter, cache, failurePolicy, checkpoint, metrics)) {
+                    walk(inputReader, walker, checkpoint == null ? 0 : checkpoint.getLine());
                 }
 
+                // Reached only after the walker has written its last result.
+                outputWriter.finish();
+            } catch (RecursiveWalkException e) {
+                throw e;
             } catch (IOException e) {
-                throw new RecursiveWalkException("Cannot create reader to read input file", e);
-            } catch (NullPointerException | InvalidPathException e) {
-                throw new RecursiveWalkException("Input file '" + args[0] + "' must be a correct existing file path", e);
+                throw new RecursiveWalkException("Cannot create writer to write output file", e);
+            } catch (InvalidPathException e) {
+                throw new RecursiveWalkException("Output file '" + options.getOutputFile() + "' must be a correct file path", e);
             }
+        } catch (RecursiveWalkException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot create reader to read input file", e);
+        } catch (InvalidPathException e) {
+            throw new RecursiveWalkException("Input file '" + options.getInputFile() + "' must be a correct existing file path", e);
+        }
+
+        if (checkpoint != null) {
+            checkpoint.delete();
         }
     }
 
-    public static void writeExceptionInfo(String file, BufferedWriter writer) throws RecursiveWalkException {
+    private static WalkCheckpoint openCheckpoint(WalkOptions options) throws RecursiveWalkException {
+        if (options.getCheckpointFile() == null) {
+            return null;
+        }
+
         try {
-            writer.write(String.format(OUTPUT_FORMAT, 0, file));
-        } catch (IOException e) {
-            throw new RecursiveWalkException("Cannot write to output file because of some I/O error", e);
+            return WalkCheckpoint.open(Paths.get(options.getCheckpointFile()), options.getCheckpointPeriod(),
+                    options.isResume());
+        } catch (InvalidPathException e) {
+            throw new RecursiveWalkException("Checkpoint file '" + options.getCheckpointFile() + "' must be a correct file path", e);
         }
     }
 
-    public static void writeCorrectInfo(Path file, BufferedWriter writer) throws RecursiveWalkException {
-        InputStream stream;
+    private static BufferedReader openInput(WalkOptions options) throws IOException {
+        if (options.isStandardInput()) {
+            return new BufferedReader(new InputStreamReader(new StandardInputStream(), CHARSET));
+        } else {
+            return Files.newBufferedReader(Paths.get(options.getInputFile()), CHARSET);
+        }
+    }
+
+    private static ResultWriter openOutput(WalkOptions options, WalkCheckpoint checkpoint, WalkMetrics metrics)
+            throws IOException {
+        if (options.isStandardOutput()) {
+            return HashOutputWriter.openStandardOutput(metrics);
+        } else if (options.isManifest()) {
+            return ManifestOutputWriter.open(Paths.get(options.getOutputFile()), options.getAlgorithm(), metrics);
+        } else if (options.isSharded()) {
+            return ShardOutputWriter.open(Paths.get(options.getOutputFile()), metrics);
+        } else if (checkpoint != null) {
+            return HashOutputWriter.openAt(Paths.get(options.getOutputFile()), checkpoint.getOutputOffset(), metrics);
+        } else {
+            return HashOutputWriter.open(Paths.get(options.getOutputFile()), metrics);
+        }
+    }
+
+    private static FailurePolicy openFailurePolicy(WalkOptions options) throws RecursiveWalkException {
         try {
-            stream = new BufferedInputStream(Files.newInputStream(file));
-        } catch (IOException e) {
-            throw new RecursiveWalkException("Cannot create reader to file '" + file + "'", e);
+            return FailurePolicy.open(options.getRetries(), options.getRetryDelay(), options.isFailFast(),
+                    options.getErrorLogFile() == null ? null : Paths.get(options.getErrorLogFile()));
+        } catch (InvalidPathException e) {
+            throw new RecursiveWalkException("Error log '" + options.getErrorLogFile() + "' must be a correct file path", e);
         }
+    }
 
-        int hash = 0x811c9dc5;
-        byte[] readArray = new byte[1024];
+    private static HashCache openCache(WalkOptions options) throws RecursiveWalkException {
+        if (options.getCacheFile() == null) {
+            return null;
+        }
 
         try {
-            int readBytes;
+            return HashCache.open(Paths.get(options.getCacheFile()), options.getAlgorithm());
+        } catch (InvalidPathException e) {
+            throw new RecursiveWalkException("Cache file '" + options.getCacheFile() + "' must be a correct file path", e);
+        }
+    }
+
+    private static TreeWalker createWalker(WalkOptions options, ResultWriter writer, HashCache cache,
+                                           FailurePolicy failurePolicy, WalkCheckpoint checkpoint, WalkMetrics metrics)
+            throws RecursiveWalkException {
+        FileContentReader reader = new FileContentReader(options.getMappingThreshold(), metrics);
+        FileHashCalculator calculator = new FileHashCalculator(reader, options.getAlgorithm(), cache,
+                options.getChunkSize(), metrics, failurePolicy);
 
-            while ((readBytes = stream.read(readArray)) != -1) {
-                for (int i = 0; i < readBytes; i++) {
-                    hash = (hash * 0x01000193) ^ (readArray[i] & 0xff);
+        // Options of the manifest exclude duplicates and checkpoints, so these get info lines only.
+        if (options.isDuplicates()) {
+            return new DuplicateTreeWalker((HashOutputWriter) writer, reader, calculator, options.getFilter(), options.getThreads());
+        }
+
+        if (options.isForkJoin()) {
+            return new ForkJoinTreeWalker(writer, calculator, options.isStandardInputData(), options.getFilter(),
+                    options.getThreads());
+        }
+
+        HashingEngine engine;
+        if (options.getVirtualThreadFiles() > 0) {
+            engine = ParallelHashingEngine.withVirtualThreads(writer, calculator, options.getVirtualThreadFiles());
+        } else if (options.getAsyncFiles() > 0) {
+            engine = new AsyncHashingEngine(writer, calculator, options.getThreads(), options.getAsyncFiles());
+        } else if (options.getThreads() > 1) {
+            engine = new ParallelHashingEngine(writer, calculator, options.getThreads());
+        } else {
+            engine = new SequentialHashingEngine(writer, calculator);
+        }
+
+        if (checkpoint != null) {
+            engine = new CheckpointingHashingEngine(engine, (HashOutputWriter) writer, checkpoint);
+        }
+
+        if (options.isSharded()) {
+            engine = IndexingHashingEngine.open(engine, Paths.get(options.getOutputFile()));
+        }
+
+        return new FileTreeWalker(engine, options.isStandardInputData(), metrics, options.getFilter(),
+                options.getShard());
+    }
+
+    private static void walk(BufferedReader inputReader, TreeWalker walker, long skippedLines)
+            throws RecursiveWalkException {
+        String line;
+
+        try {
+            for (long i = 0; i < skippedLines; i++) {
+                if (inputReader.readLine() == null) {
+                    throw new RecursiveWalkException("Input file is shorter than the checkpoint");
+                }
+            }
+
+            while ((line = inputReader.readLine()) != null) {
+                walker.walk(line);
+
+                // Let the consumer see results while the producer of input is busy.
+                if (!inputReader.ready()) {
+                    walker.flush();
                 }
             }
+        } catch (RecursiveWalkException e) {
+            throw e;
         } catch (IOException e) {
-            throw new RecursiveWalkException("Cannot read file '" + file, e);
-        } catch (NullPointerException e) {
-            throw new RecursiveWalkException("Something goes wrong while reading", e);
+            throw new RecursiveWalkException("Cannot read input file because of some I/O error", e);
         }
+    }
 
-        try {
-            writer.write(String.format(OUTPUT_FORMAT, hash, file));
-        } catch (IOException e) {
-            throw new RecursiveWalkException("Cannot write to output file because of some I/O error", e);
+    /**
+     * Standard input, which is left open when the input reader is closed.
+     */
+    private static class StandardInputStream extends FilterInputStream {
+        private StandardInputStream() {
+            super(System.in);
+        }
+
+        @Override
+        public void close() {
         }
     }
 
@@ -93,7 +195,7 @@ public class RecursiveWalk {
         try {
             walk.run(args);
         } catch (RecursiveWalkException e) {
-            e.getMessage();
+            System.err.println(e.getMessage());
         }
     }
 }
@@ -0,0 +1,59 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A buffer, writing results completed in any order by their visit sequence numbers.
+ * <br>
+ * Each written result releases one permit of <strong>inFlight</strong>, so the number
+ * of buffered results never exceeds the number of permits.
+ */
+class ReorderBuffer {
+    private static final HashResult SKIPPED = new HashResult(null, null);
+
+    private final ResultWriter writer;
+    private final Semaphore inFlight;
+    private final Map<Long, HashResult> completed;
+    private long nextSequence;
+
+    ReorderBuffer(ResultWriter writer, Semaphore inFlight) {
+        this.writer = writer;
+        this.inFlight = inFlight;
+
+        completed = new HashMap<>();
+        nextSequence = 0;
+    }
+
+    /**
+     * Put <strong>result</strong> with <strong>sequence</strong> number and write all
+     * results which are ready to be written in order.
+     *
+     * @param sequence visit sequence number of the result.
+     * @param result result to write or <strong>null</strong> if nothing should be written.
+     * @throws RecursiveWalkException when the result cannot be written.
+     */
+    synchronized void complete(long sequence, HashResult result) throws RecursiveWalkException {
+        completed.put(sequence, result == null ? SKIPPED : result);
+
+        HashResult readyResult;
+        while ((readyResult = completed.remove(nextSequence)) != null) {
+            nextSequence++;
+            inFlight.release();
+
+            if (readyResult != SKIPPED) {
+                writer.write(readyResult);
+            }
+        }
+    }
+
+    /**
+     * Write results written so far to the output.
+     *
+     * @throws RecursiveWalkException when results cannot be written.
+     */
+    synchronized void flush() throws RecursiveWalkException {
+        writer.flush();
+    }
+}
@@ -0,0 +1,39 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.Closeable;
+
+/**
+ * A writer of walk results in one of output formats: info lines of {@link HashOutputWriter}
+ * or a binary manifest of {@link ManifestOutputWriter}.
+ * <br>
+ * Writers are not thread-safe.
+ */
+interface ResultWriter extends Closeable {
+    /**
+     * Write <strong>result</strong> of one file.
+     *
+     * @param result a result to write.
+     * @throws RecursiveWalkException when the result cannot be written.
+     */
+    void write(HashResult result) throws RecursiveWalkException;
+
+    /**
+     * Write all buffered results to the output.
+     *
+     * @throws RecursiveWalkException when results cannot be written.
+     */
+    void flush() throws RecursiveWalkException;
+
+    /**
+     * Mark the output complete after the last result of a successful walk.
+     * <br>
+     * Output closed without it is left as output of an aborted walk.
+     *
+     * @throws RecursiveWalkException when the output cannot be completed.
+     */
+    default void finish() throws RecursiveWalkException {
+    }
+
+    @Override
+    void close() throws RecursiveWalkException;
+}
@@ -0,0 +1,41 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A {@link HashingEngine} hashing files one by one in the calling thread.
+ */
+class SequentialHashingEngine implements HashingEngine {
+    private final ResultWriter writer;
+    private final FileHashCalculator calculator;
+
+    SequentialHashingEngine(ResultWriter writer, FileHashCalculator calculator) {
+        this.writer = writer;
+        this.calculator = calculator;
+    }
+
+    @Override
+    public void hashFile(Path file, BasicFileAttributes attributes) throws RecursiveWalkException {
+        writer.write(calculator.calculate(file, attributes));
+    }
+
+    @Override
+    public void hashFailed(String file, Exception cause) throws RecursiveWalkException {
+        writer.write(calculator.getFailedResult(file, cause));
+    }
+
+    @Override
+    public void hashStandardInput(String name) throws RecursiveWalkException {
+        writer.write(calculator.calculateStandardInput(name));
+    }
+
+    @Override
+    public void flush() throws RecursiveWalkException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,35 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 hash, computed by {@link MessageDigest}.
+ */
+public class Sha256Hasher implements FileHasher {
+    private final MessageDigest messageDigest;
+
+    public Sha256Hasher() {
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 must be supported by every Java platform", e);
+        }
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        messageDigest.update(buffer);
+    }
+
+    @Override
+    public byte[] digest() {
+        return messageDigest.digest();
+    }
+
+    @Override
+    public void reset() {
+        messageDigest.reset();
+    }
+}
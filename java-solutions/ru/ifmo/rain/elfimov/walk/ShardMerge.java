@@ -0,0 +1,257 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A tool, joining outputs of {@link RecursiveWalk} shards into the output of the whole walk.
+ * <br>
+ * Usage: java ShardMerge &lt;output file&gt; &lt;shard output file&gt;...
+ * <br>
+ * Each shard output is read with its index, written by {@link IndexingHashingEngine}.
+ * Units of all shards are merged by their input line and entry ordinal in one streaming pass,
+ * so only a buffer of each shard is kept in memory. Records of {@link ShardOutputWriter} are copied
+ * as raw bytes of their lengths, so file names with any bytes are kept intact
+ * and chunk lines follow their info lines.
+ */
+public class ShardMerge {
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+    private static final String USAGE = "Usage: java ShardMerge <output file> <shard output file>...";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public void run(String[] args) throws RecursiveWalkException {
+        if (args == null || args.length < 2) {
+            throw new RecursiveWalkException(USAGE);
+        }
+
+        for (String arg : args) {
+            if (arg == null) {
+                throw new RecursiveWalkException(USAGE);
+            }
+        }
+
+        List<Shard> shards = new ArrayList<>();
+
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(Paths.get(args[0])), BUFFER_SIZE)) {
+            try {
+                for (int i = 1; i < args.length; i++) {
+                    shards.add(Shard.open(Paths.get(args[i])));
+                }
+
+                merge(shards, output);
+            } finally {
+                for (Shard shard : shards) {
+                    shard.close();
+                }
+            }
+        } catch (RecursiveWalkException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot write output file '" + args[0] + "'", e);
+        } catch (InvalidPathException e) {
+            throw new RecursiveWalkException("Arguments must be correct file paths", e);
+        }
+    }
+
+    private static void merge(List<Shard> shards, OutputStream output) throws IOException {
+        PriorityQueue<Shard> queue = new PriorityQueue<>(
+                Comparator.<Shard>comparingLong(shard -> shard.line).thenComparingLong(shard -> shard.unit));
+
+        for (Shard shard : shards) {
+            if (shard.nextUnit()) {
+                queue.add(shard);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            Shard shard = queue.poll();
+            shard.copyUnit(output);
+
+            if (shard.nextUnit()) {
+                queue.add(shard);
+            }
+        }
+
+        for (Shard shard : shards) {
+            shard.checkFinished();
+        }
+    }
+
+    /**
+     * Output of one shard with its index.
+     */
+    private static class Shard implements Closeable {
+        private final Path file;
+        private final InputStream output;
+        private final BufferedReader index;
+        private final byte[] buffer;
+        private int position;
+        private int limit;
+        private long line;
+        private long unit;
+        private long count;
+
+        private Shard(Path file, InputStream output, BufferedReader index) {
+            this.file = file;
+            this.output = output;
+            this.index = index;
+
+            buffer = new byte[BUFFER_SIZE];
+            position = 0;
+            limit = 0;
+        }
+
+        private static Shard open(Path file) throws RecursiveWalkException {
+            Path indexFile = file.resolveSibling(file.getFileName() + IndexingHashingEngine.INDEX_SUFFIX);
+            InputStream output = null;
+
+            try {
+                output = Files.newInputStream(file);
+                return new Shard(file, output, Files.newBufferedReader(indexFile, CHARSET));
+            } catch (IOException e) {
+                if (output != null) {
+                    try {
+                        output.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+
+                throw new RecursiveWalkException("Cannot read shard output '" + file + "' or its index", e);
+            }
+        }
+
+        private boolean nextUnit() throws RecursiveWalkException {
+            String entry;
+
+            try {
+                entry = index.readLine();
+            } catch (IOException e) {
+                throw new RecursiveWalkException("Cannot read index of shard output '" + file + "'", e);
+            }
+
+            if (entry == null) {
+                return false;
+            }
+
+            String[] values = entry.split(" ");
+
+            try {
+                if (values.length != 3) {
+                    throw new NumberFormatException("Expected 3 numbers");
+                }
+
+                line = Long.parseLong(values[0]);
+                unit = Long.parseLong(values[1]);
+                count = Long.parseLong(values[2]);
+            } catch (NumberFormatException e) {
+                throw new RecursiveWalkException("Index of shard output '" + file + "' is corrupted", e);
+            }
+
+            return true;
+        }
+
+        private void copyUnit(OutputStream writer) throws IOException {
+            for (long i = 0; i < count; i++) {
+                int length = readLength();
+
+                if (length < 0) {
+                    throw new RecursiveWalkException("Shard output '" + file + "' is shorter than its index");
+                }
+
+                copyRecord(writer, length);
+            }
+        }
+
+        /**
+         * Read length of the next record.
+         *
+         * @return length in bytes or <strong>-1</strong> at the end of output.
+         */
+        private int readLength() throws IOException {
+            int value = 0;
+
+            for (int shift = 0; shift < 7 * HashManifest.MAX_VARINT_LENGTH; shift += 7) {
+                if (position == limit && !fill()) {
+                    if (shift == 0) {
+                        return -1;
+                    }
+                    break;
+                }
+
+                byte b = buffer[position++];
+                value |= (b & 0x7f) << shift;
+
+                if (b >= 0) {
+                    if (value < 0) {
+                        break;
+                    }
+                    return value;
+                }
+            }
+
+            throw new RecursiveWalkException("Shard output '" + file + "' is corrupted");
+        }
+
+        private void copyRecord(OutputStream writer, int length) throws IOException {
+            while (length > 0) {
+                if (position == limit && !fill()) {
+                    throw new RecursiveWalkException("Shard output '" + file + "' ends inside a record");
+                }
+
+                int copied = Math.min(length, limit - position);
+                writer.write(buffer, position, copied);
+                position += copied;
+                length -= copied;
+            }
+        }
+
+        private boolean fill() throws IOException {
+            int read = output.read(buffer);
+
+            if (read < 0) {
+                return false;
+            }
+
+            position = 0;
+            limit = read;
+            return true;
+        }
+
+        private void checkFinished() throws IOException {
+            if (position < limit || fill()) {
+                throw new RecursiveWalkException("Shard output '" + file + "' is longer than its index");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                output.close();
+            } finally {
+                index.close();
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            new ShardMerge().run(args);
+        } catch (RecursiveWalkException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+
+/**
+ * A writer of shard output for {@link ShardMerge}: info lines of {@link HashOutputWriter},
+ * each result prefixed by the length of its lines in bytes as an unsigned LEB128 varint.
+ * <br>
+ * Records are split by their lengths only, so names of files and echoed input lines may contain
+ * any bytes, including line separators. {@link ShardMerge} copies records without their lengths.
+ * <br>
+ * The writer is not thread-safe.
+ */
+class ShardOutputWriter implements ResultWriter {
+    private final HashOutputWriter output;
+    private final RecordBuffer record;
+    private final HashOutputWriter recordWriter;
+    private final byte[] length;
+
+    private ShardOutputWriter(HashOutputWriter output, WalkMetrics metrics) {
+        this.output = output;
+
+        record = new RecordBuffer();
+        recordWriter = new HashOutputWriter(Channels.newChannel(record), true, metrics);
+        length = new byte[HashManifest.MAX_VARINT_LENGTH];
+    }
+
+    /**
+     * Open a writer of shard output <strong>file</strong>, creating or truncating it.
+     *
+     * @param file a shard output file.
+     * @param metrics metrics to record write stage to.
+     * @return opened writer.
+     * @throws IOException when file cannot be opened for writing.
+     */
+    static ShardOutputWriter open(Path file, WalkMetrics metrics) throws IOException {
+        return new ShardOutputWriter(HashOutputWriter.open(file, metrics), metrics);
+    }
+
+    /**
+     * Format lines of <strong>result</strong> aside to write them after their length.
+     *
+     * @param result a result to write.
+     * @throws RecursiveWalkException when the record cannot be written.
+     */
+    @Override
+    public void write(HashResult result) throws RecursiveWalkException {
+        record.reset();
+        recordWriter.write(result);
+        recordWriter.flush();
+
+        output.writeBytes(length, 0, HashManifest.putVarint(length, 0, record.size()));
+        output.writeBytes(record.getBytes(), 0, record.size());
+    }
+
+    @Override
+    public void flush() throws RecursiveWalkException {
+        output.flush();
+    }
+
+    @Override
+    public void close() throws RecursiveWalkException {
+        try {
+            recordWriter.close();
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Lines of one record, exposing its array to be written without a copy.
+     */
+    private static class RecordBuffer extends ByteArrayOutputStream {
+        private byte[] getBytes() {
+            return buf;
+        }
+    }
+}
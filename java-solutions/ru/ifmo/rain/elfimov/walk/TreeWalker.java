@@ -0,0 +1,31 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.Closeable;
+
+/**
+ * A walker of input roots, writing info lines of all files under them in the input order.
+ */
+interface TreeWalker extends Closeable {
+    /**
+     * Walk all files under <strong>root</strong>.
+     *
+     * @param root an input line with path of file or directory.
+     * @throws RecursiveWalkException when files cannot be walked or written.
+     */
+    void walk(String root) throws RecursiveWalkException;
+
+    /**
+     * Write info lines completed so far to the output without waiting for files in flight.
+     *
+     * @throws RecursiveWalkException when files cannot be walked or written.
+     */
+    void flush() throws RecursiveWalkException;
+
+    /**
+     * Wait for all walked roots and write their remaining info lines.
+     *
+     * @throws RecursiveWalkException when files cannot be walked or written.
+     */
+    @Override
+    void close() throws RecursiveWalkException;
+}
@@ -0,0 +1,145 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A checkpoint of a long walk, kept in a small text file.
+ * <br>
+ * The file holds one line <strong>"line files offset"</strong>: index of the input line being walked,
+ * number of info lines of that root already written and length of the output written so far.
+ * All input lines before <strong>line</strong> are fully written. The file is replaced atomically,
+ * so a crash leaves either the previous or the next checkpoint.
+ */
+class WalkCheckpoint {
+    private final Path file;
+    private final Path temporaryFile;
+    private final long periodNanos;
+    private long lastSaveNanos;
+
+    private long line;
+    private long files;
+    private long outputOffset;
+
+    private WalkCheckpoint(Path file, long periodSeconds) {
+        this.file = file;
+
+        temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        periodNanos = TimeUnit.SECONDS.toNanos(periodSeconds);
+        lastSaveNanos = System.nanoTime();
+    }
+
+    /**
+     * Open checkpoint <strong>file</strong>.
+     *
+     * @param file a checkpoint file.
+     * @param periodSeconds minimal period between saved checkpoints.
+     * @param resume whether the saved checkpoint should be loaded.
+     * @return checkpoint, starting from the loaded state or from the beginning
+     * if there is nothing to resume.
+     * @throws RecursiveWalkException when the saved checkpoint cannot be read.
+     */
+    static WalkCheckpoint open(Path file, long periodSeconds, boolean resume) throws RecursiveWalkException {
+        WalkCheckpoint checkpoint = new WalkCheckpoint(file, periodSeconds);
+
+        if (resume) {
+            checkpoint.load();
+        }
+
+        return checkpoint;
+    }
+
+    private void load() throws RecursiveWalkException {
+        String content;
+
+        try {
+            content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot read checkpoint file '" + file + "'", e);
+        }
+
+        String[] values = content.split(" ");
+
+        try {
+            if (values.length != 3) {
+                throw new NumberFormatException("Expected 3 numbers");
+            }
+
+            line = Long.parseLong(values[0]);
+            files = Long.parseLong(values[1]);
+            outputOffset = Long.parseLong(values[2]);
+        } catch (NumberFormatException e) {
+            throw new RecursiveWalkException("Checkpoint file '" + file + "' is corrupted", e);
+        }
+
+        if (line < 0 || files < 0 || outputOffset < 0) {
+            throw new RecursiveWalkException("Checkpoint file '" + file + "' is corrupted");
+        }
+    }
+
+    long getLine() {
+        return line;
+    }
+
+    long getFiles() {
+        return files;
+    }
+
+    long getOutputOffset() {
+        return outputOffset;
+    }
+
+    boolean isDue() {
+        return System.nanoTime() - lastSaveNanos >= periodNanos;
+    }
+
+    /**
+     * Save a checkpoint. Output up to <strong>outputOffset</strong> should be already written.
+     *
+     * @param line index of the input line being walked.
+     * @param files number of written info lines of that input line.
+     * @param outputOffset length of the written output.
+     * @throws RecursiveWalkException when checkpoint cannot be written.
+     */
+    void save(long line, long files, long outputOffset) throws RecursiveWalkException {
+        byte[] content = (line + " " + files + " " + outputOffset + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+
+        try {
+            Files.write(temporaryFile, content);
+
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot write checkpoint file '" + file + "'", e);
+        }
+
+        this.line = line;
+        this.files = files;
+        this.outputOffset = outputOffset;
+        lastSaveNanos = System.nanoTime();
+    }
+
+    /**
+     * Delete checkpoint of a finished walk.
+     *
+     * @throws RecursiveWalkException when checkpoint cannot be deleted.
+     */
+    void delete() throws RecursiveWalkException {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot delete checkpoint file '" + file + "'", e);
+        }
+    }
+}
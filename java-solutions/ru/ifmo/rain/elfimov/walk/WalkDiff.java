@@ -0,0 +1,401 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A tool, comparing a walk listing with another listing or with a live tree.
+ * <br>
+ * Usage:
+ * <ul>
+ *     <li>java WalkDiff &lt;report file&gt; &lt;old listing&gt; &lt;new listing&gt;</li>
+ *     <li>java WalkDiff &lt;report file&gt; &lt;old listing&gt; --tree &lt;root&gt;... [--hash algorithm] [--cache file]</li>
+ * </ul>
+ * Report file <strong>-</strong> is standard output. Each difference is written as a line
+ * <strong>"A path"</strong> for added, <strong>"D path"</strong> for deleted and <strong>"M path"</strong>
+ * for changed files.
+ * <br>
+ * Listings are info lines of {@link RecursiveWalk} sorted by path in code point order,
+ * which is the order of <strong>LC_ALL=C sort -k2</strong>. Chunk lines are ignored.
+ * Both sides are read in one merge pass, so memory does not depend on the size of listings.
+ * <br>
+ * A live tree is walked in the same order: siblings are sorted by name with a separator appended to
+ * directory names. Added files are never read. If a hash cache of the old walk is given, files with
+ * another size are reported as changed without reading, and files with unchanged metadata take hash from cache.
+ * The cache is only read, so it keeps describing the old walk.
+ * Roots should not be nested in each other.
+ */
+public class WalkDiff {
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+    private static final String USAGE = "Usage: java WalkDiff <report file> <old listing> "
+            + "(<new listing> | --tree <root>... [--hash algorithm] [--cache file])";
+    private static final Comparator<String> PATH_ORDER = WalkDiff::compareCodePoints;
+
+    public void run(String[] args) throws RecursiveWalkException {
+        if (args == null || args.length < 3 || Arrays.asList(args).contains(null)) {
+            throw new RecursiveWalkException(USAGE);
+        }
+
+        try (Writer report = openReport(args[0]);
+             Listing oldListing = new Listing(Paths.get(args[1]))) {
+            if ("--tree".equals(args[2])) {
+                diffTree(oldListing, args, report);
+            } else if (args.length == 3) {
+                try (Listing newListing = new Listing(Paths.get(args[2]))) {
+                    diffListings(oldListing, newListing, report);
+                }
+            } else {
+                throw new RecursiveWalkException(USAGE);
+            }
+        } catch (RecursiveWalkException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Cannot write report file '" + args[0] + "'", e);
+        } catch (InvalidPathException e) {
+            throw new RecursiveWalkException("Arguments must be correct file paths", e);
+        }
+    }
+
+    private static Writer openReport(String file) throws IOException {
+        if (WalkOptions.STANDARD_STREAM.equals(file)) {
+            return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), CHARSET)) {
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+        }
+
+        return Files.newBufferedWriter(Paths.get(file), CHARSET);
+    }
+
+    private static void diffListings(Listing oldListing, Listing newListing, Writer report) throws IOException {
+        boolean hasOld = oldListing.next();
+        boolean hasNew = newListing.next();
+
+        while (hasOld || hasNew) {
+            int order = !hasOld ? 1 : !hasNew ? -1 : PATH_ORDER.compare(oldListing.path, newListing.path);
+
+            if (order < 0) {
+                write(report, 'D', oldListing.path);
+                hasOld = oldListing.next();
+            } else if (order > 0) {
+                write(report, 'A', newListing.path);
+                hasNew = newListing.next();
+            } else {
+                if (!oldListing.hash.equals(newListing.hash)) {
+                    write(report, 'M', newListing.path);
+                }
+
+                hasOld = oldListing.next();
+                hasNew = newListing.next();
+            }
+        }
+    }
+
+    private static void diffTree(Listing oldListing, String[] args, Writer report) throws IOException {
+        List<String> roots = new ArrayList<>();
+        HashAlgorithm algorithm = HashAlgorithm.FNV32;
+        String cacheFile = null;
+
+        for (int i = 3; i < args.length; i++) {
+            switch (args[i]) {
+                case "--hash":
+                    algorithm = HashAlgorithm.forName(getValue(args, ++i));
+                    break;
+                case "--cache":
+                    cacheFile = getValue(args, ++i);
+                    break;
+                default:
+                    roots.add(args[i]);
+            }
+        }
+
+        if (roots.isEmpty()) {
+            throw new RecursiveWalkException(USAGE);
+        }
+
+        WalkMetrics metrics = new WalkMetrics();
+
+        try (HashCache cache = cacheFile == null ? null : HashCache.openReadOnly(Paths.get(cacheFile), algorithm)) {
+            FileHashCalculator calculator = new FileHashCalculator(
+                    new FileContentReader(FileContentReader.DEFAULT_MAPPING_THRESHOLD, metrics), algorithm, cache, 0, metrics);
+            SortedTree tree = new SortedTree(roots);
+
+            boolean hasOld = oldListing.next();
+            boolean hasNew = tree.next();
+
+            while (hasOld || hasNew) {
+                int order = !hasOld ? 1 : !hasNew ? -1 : PATH_ORDER.compare(oldListing.path, tree.path);
+
+                if (order < 0) {
+                    write(report, 'D', oldListing.path);
+                    hasOld = oldListing.next();
+                } else if (order > 0) {
+                    write(report, 'A', tree.path);
+                    hasNew = tree.next();
+                } else {
+                    if (isChanged(oldListing.hash, tree, calculator, cache)) {
+                        write(report, 'M', tree.path);
+                    }
+
+                    hasOld = oldListing.next();
+                    hasNew = tree.next();
+                }
+            }
+        }
+    }
+
+    private static boolean isChanged(String oldHash, SortedTree tree, FileHashCalculator calculator, HashCache cache)
+            throws RecursiveWalkException {
+        HashResult result;
+
+        if (tree.attributes == null) {
+            result = calculator.getFailedResult(tree.path);
+        } else {
+            long cachedSize = cache == null ? -1 : cache.getSize(tree.path);
+
+            // Content of another size is changed whatever its hash is.
+            if (cachedSize >= 0 && cachedSize != tree.attributes.size()) {
+                return true;
+            }
+
+            result = calculator.calculate(Paths.get(tree.path), tree.attributes);
+        }
+
+        return !oldHash.equals(toHex(result.getHash()));
+    }
+
+    private static String getValue(String[] args, int position) throws RecursiveWalkException {
+        if (position >= args.length) {
+            throw new RecursiveWalkException(USAGE);
+        }
+
+        return args[position];
+    }
+
+    private static void write(Writer report, char change, String path) throws IOException {
+        report.write(change);
+        report.write(' ');
+        report.write(path);
+        report.write(System.lineSeparator());
+    }
+
+    private static String toHex(byte[] hash) {
+        StringBuilder result = new StringBuilder(hash.length * 2);
+
+        for (byte b : hash) {
+            result.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Compare strings by Unicode code points, which is the order of their UTF-8 bytes.
+     */
+    private static int compareCodePoints(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+
+        for (int i = 0; i < length; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+
+            if (x != y) {
+                // Surrogates encode code points above all other chars.
+                if (Character.isSurrogate(x) != Character.isSurrogate(y)) {
+                    return Character.isSurrogate(x) ? 1 : -1;
+                }
+
+                return x - y;
+            }
+        }
+
+        return a.length() - b.length();
+    }
+
+    /**
+     * A listing read line by line, checking that paths are sorted.
+     */
+    private static class Listing implements AutoCloseable {
+        private final Path file;
+        private final BufferedReader reader;
+        private long lineNumber;
+        private String path;
+        private String hash;
+
+        private Listing(Path file) throws RecursiveWalkException {
+            this.file = file;
+
+            try {
+                reader = Files.newBufferedReader(file, CHARSET);
+            } catch (IOException e) {
+                throw new RecursiveWalkException("Cannot read listing '" + file + "'", e);
+            }
+        }
+
+        private boolean next() throws RecursiveWalkException {
+            String line;
+
+            try {
+                do {
+                    line = reader.readLine();
+                    lineNumber++;
+                } while (line != null && (line.isEmpty() || line.startsWith("\t")));
+            } catch (IOException e) {
+                throw new RecursiveWalkException("Cannot read listing '" + file + "'", e);
+            }
+
+            if (line == null) {
+                return false;
+            }
+
+            int separator = line.indexOf(' ');
+            if (separator < 0) {
+                throw new RecursiveWalkException("Line " + lineNumber + " of listing '" + file + "' is not an info line");
+            }
+
+            String nextPath = line.substring(separator + 1);
+            if (path != null && PATH_ORDER.compare(path, nextPath) >= 0) {
+                throw new RecursiveWalkException("Listing '" + file + "' is not sorted by path at line " + lineNumber);
+            }
+
+            hash = line.substring(0, separator);
+            path = nextPath;
+            return true;
+        }
+
+        @Override
+        public void close() throws RecursiveWalkException {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new RecursiveWalkException("Cannot read listing '" + file + "'", e);
+            }
+        }
+    }
+
+    /**
+     * Files of roots, visited in path order. Only sorted entries of open directories are kept in memory.
+     */
+    private static class SortedTree {
+        private final Deque<Deque<Entry>> stack;
+        private String path;
+        private BasicFileAttributes attributes;
+
+        private SortedTree(List<String> roots) {
+            stack = new ArrayDeque<>();
+
+            List<Entry> entries = new ArrayList<>();
+            for (String root : roots) {
+                entries.add(Entry.read(root, true));
+            }
+            // Roots are merged in the same order as siblings, a directory is ordered by its paths.
+            entries.sort(Comparator.comparing(entry -> entry.key, PATH_ORDER));
+            stack.push(new ArrayDeque<>(entries));
+        }
+
+        private boolean next() throws RecursiveWalkException {
+            while (!stack.isEmpty()) {
+                Entry entry = stack.peek().poll();
+
+                if (entry == null) {
+                    stack.pop();
+                } else if (entry.attributes != null && entry.attributes.isDirectory()) {
+                    stack.push(list(entry));
+                } else {
+                    path = entry.path;
+                    attributes = entry.attributes;
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private static Deque<Entry> list(Entry directory) throws RecursiveWalkException {
+            List<Entry> entries = new ArrayList<>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(directory.path))) {
+                for (Path child : stream) {
+                    entries.add(Entry.read(child.toString(), false));
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                throw new RecursiveWalkException("Cannot read directory '" + directory.path + "'", e);
+            }
+
+            entries.sort(Comparator.comparing(entry -> entry.key, PATH_ORDER));
+            return new ArrayDeque<>(entries);
+        }
+    }
+
+    /**
+     * A path with attributes or <strong>null</strong> if they cannot be read.
+     */
+    private static class Entry {
+        private final String path;
+        private final String key;
+        private final BasicFileAttributes attributes;
+
+        private Entry(String path, String key, BasicFileAttributes attributes) {
+            this.path = path;
+            this.key = key;
+            this.attributes = attributes;
+        }
+
+        private static Entry read(String path, boolean root) {
+            Path file;
+
+            try {
+                file = Paths.get(path);
+            } catch (InvalidPathException e) {
+                return new Entry(path, path, null);
+            }
+
+            Path fileName = file.getFileName();
+            // Roots are ordered by whole paths, children of a directory by names.
+            String name = root || fileName == null ? file.toString() : fileName.toString();
+            BasicFileAttributes attributes;
+
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                // An entry without attributes is not listed as a directory, so it is ordered as a file.
+                return new Entry(path, name, null);
+            }
+
+            // All paths under a directory start with its name and a separator.
+            return new Entry(path, attributes.isDirectory() ? name + File.separator : name, attributes);
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            new WalkDiff().run(args);
+        } catch (RecursiveWalkException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Rules choosing files and directories visited under each root.
+ * <br>
+ * Globs are matched both against the name of a file and against its path relative to the root,
+ * regular expressions are searched in the relative path with <strong>/</strong> separators.
+ * Excluded directories are skipped with their whole subtrees, include rules are applied to files only.
+ * A root itself is never excluded as a directory.
+ * <br>
+ * Files deeper than maximal depth, larger than maximal size or modified before the given instant are skipped.
+ * Skipped files have no info lines.
+ */
+class WalkFilter {
+    private final List<PathMatcher> includeGlobs;
+    private final List<PathMatcher> excludeGlobs;
+    private final List<Pattern> includeRegexes;
+    private final List<Pattern> excludeRegexes;
+    private int maxDepth;
+    private long maxSize;
+    private Instant modifiedSince;
+
+    WalkFilter() {
+        includeGlobs = new ArrayList<>();
+        excludeGlobs = new ArrayList<>();
+        includeRegexes = new ArrayList<>();
+        excludeRegexes = new ArrayList<>();
+        maxDepth = Integer.MAX_VALUE;
+        maxSize = Long.MAX_VALUE;
+    }
+
+    void include(String glob) throws RecursiveWalkException {
+        includeGlobs.add(compileGlob(glob));
+    }
+
+    void exclude(String glob) throws RecursiveWalkException {
+        excludeGlobs.add(compileGlob(glob));
+    }
+
+    void includeRegex(String regex) throws RecursiveWalkException {
+        includeRegexes.add(compileRegex(regex));
+    }
+
+    void excludeRegex(String regex) throws RecursiveWalkException {
+        excludeRegexes.add(compileRegex(regex));
+    }
+
+    /**
+     * Set maximal depth of visited files, files of root directory have depth <strong>1</strong>.
+     *
+     * @param maxDepth maximal depth.
+     */
+    void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    void setModifiedSince(Instant modifiedSince) {
+        this.modifiedSince = modifiedSince;
+    }
+
+    int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Check whether <strong>directory</strong> under <strong>root</strong> should be entered.
+     *
+     * @param root a root of the walk.
+     * @param directory a directory under the root.
+     * @return <strong>false</strong> if the whole subtree of the directory should be skipped.
+     */
+    boolean acceptsDirectory(Path root, Path directory) {
+        return directory.equals(root) || !isExcluded(root, directory);
+    }
+
+    /**
+     * Check whether <strong>file</strong> under <strong>root</strong> should be hashed.
+     *
+     * @param root a root of the walk.
+     * @param file a file under the root or the root itself.
+     * @param attributes attributes of the file.
+     * @return <strong>true</strong> if the file passes all rules.
+     */
+    boolean acceptsFile(Path root, Path file, BasicFileAttributes attributes) {
+        return acceptsName(root, file)
+                && attributes.size() <= maxSize
+                && (modifiedSince == null || !attributes.lastModifiedTime().toInstant().isBefore(modifiedSince));
+    }
+
+    /**
+     * Check whether <strong>file</strong> under <strong>root</strong>, which attributes cannot be read,
+     * should have an info line.
+     *
+     * @param root a root of the walk.
+     * @param file a file under the root or the root itself.
+     * @return <strong>true</strong> if the file passes include and exclude rules.
+     */
+    boolean acceptsName(Path root, Path file) {
+        if (isExcluded(root, file)) {
+            return false;
+        }
+
+        if (includeGlobs.isEmpty() && includeRegexes.isEmpty()) {
+            return true;
+        }
+
+        return matches(includeGlobs, includeRegexes, root, file);
+    }
+
+    private boolean isExcluded(Path root, Path file) {
+        return matches(excludeGlobs, excludeRegexes, root, file);
+    }
+
+    private static boolean matches(List<PathMatcher> globs, List<Pattern> regexes, Path root, Path file) {
+        if (globs.isEmpty() && regexes.isEmpty()) {
+            return false;
+        }
+
+        Path relative = root.relativize(file);
+        Path name = file.getFileName();
+
+        for (PathMatcher glob : globs) {
+            if (glob.matches(relative) || name != null && glob.matches(name)) {
+                return true;
+            }
+        }
+
+        String relativeName = relative.toString().replace(File.separatorChar, '/');
+
+        for (Pattern regex : regexes) {
+            if (regex.matcher(relativeName).find()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static PathMatcher compileGlob(String glob) throws RecursiveWalkException {
+        try {
+            return FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        } catch (IllegalArgumentException e) {
+            throw new RecursiveWalkException("Incorrect glob '" + glob + "'", e);
+        }
+    }
+
+    private static Pattern compileRegex(String regex) throws RecursiveWalkException {
+        try {
+            return Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            throw new RecursiveWalkException("Incorrect regular expression '" + regex + "'", e);
+        }
+    }
+}
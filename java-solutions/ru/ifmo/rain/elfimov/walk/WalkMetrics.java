@@ -0,0 +1,245 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Metrics of one {@link RecursiveWalk} run.
+ * <br>
+ * Counters are thread-safe and cheap to update, so they are collected on every run.
+ * Metrics are exposed through JMX by {@link #register()} and printed to {@link System#err}
+ * by {@link #startProgress(long)}.
+ */
+class WalkMetrics implements WalkMetricsMXBean {
+    private static final String OBJECT_NAME = "ru.ifmo.rain.elfimov.walk:type=RecursiveWalk";
+    private static final double NANOS_PER_MICRO = 1e3;
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double BYTES_PER_MEGABYTE = 1 << 20;
+
+    /**
+     * Stages of processing a file.
+     */
+    enum Stage {
+        /**
+         * Walker time to list directories and read attributes before the file is visited.
+         */
+        STAT,
+        OPEN,
+        /**
+         * Time of reading or mapping file content. Page faults of mapped content go to {@link #HASH}.
+         */
+        READ,
+        HASH,
+        WRITE;
+
+        private String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final long startNanos;
+    private final LongAdder filesVisited;
+    private final LongAdder bytesHashed;
+    private final Map<Stage, LatencyHistogram> stageHistograms;
+    private final Map<String, LongAdder> errorCounts;
+    private volatile IntSupplier queueDepth;
+
+    WalkMetrics() {
+        startNanos = System.nanoTime();
+        filesVisited = new LongAdder();
+        bytesHashed = new LongAdder();
+        stageHistograms = new EnumMap<>(Stage.class);
+        errorCounts = new ConcurrentHashMap<>();
+        queueDepth = () -> 0;
+
+        for (Stage stage : Stage.values()) {
+            stageHistograms.put(stage, new LatencyHistogram());
+        }
+    }
+
+    void recordFile() {
+        filesVisited.increment();
+    }
+
+    void recordBytes(long bytes) {
+        bytesHashed.add(bytes);
+    }
+
+    /**
+     * Record latency of <strong>stage</strong> started at <strong>startNanos</strong> and finished now.
+     *
+     * @param stage a stage of processing.
+     * @param startNanos {@link System#nanoTime()} at the start of stage.
+     */
+    void recordStage(Stage stage, long startNanos) {
+        stageHistograms.get(stage).record(System.nanoTime() - startNanos);
+    }
+
+    void recordError(Throwable error) {
+        errorCounts.computeIfAbsent(error.getClass().getSimpleName(), name -> new LongAdder()).increment();
+    }
+
+    void setQueueDepth(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * Register metrics in the platform {@link MBeanServer}.
+     *
+     * @return a handle, unregistering metrics when closed.
+     * @throws RecursiveWalkException when metrics cannot be registered.
+     */
+    Closeable register() throws RecursiveWalkException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            server.registerMBean(this, name);
+
+            return () -> {
+                try {
+                    server.unregisterMBean(name);
+                } catch (JMException ignored) {
+                }
+            };
+        } catch (JMException e) {
+            throw new RecursiveWalkException("Cannot register walk metrics as '" + OBJECT_NAME + "'", e);
+        }
+    }
+
+    /**
+     * Print a progress line to {@link System#err} every <strong>periodSeconds</strong> seconds.
+     *
+     * @param periodSeconds period of progress lines.
+     * @return a handle, stopping progress and printing the final line when closed.
+     */
+    Closeable startProgress(long periodSeconds) {
+        ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "walk-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executorService.scheduleAtFixedRate(() -> System.err.println(getProgressLine()),
+                periodSeconds, periodSeconds, TimeUnit.SECONDS);
+
+        return () -> {
+            executorService.shutdownNow();
+            System.err.println(getProgressLine());
+        };
+    }
+
+    String getProgressLine() {
+        StringBuilder line = new StringBuilder(String.format(Locale.ROOT,
+                "files=%d bytes=%d elapsed=%.1fs throughput=%.1fMB/s queue=%d",
+                getFilesVisited(), getBytesHashed(), getElapsedSeconds(),
+                getThroughputMegabytesPerSecond(), getQueueDepth()));
+
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = stageHistograms.get(stage);
+            line.append(String.format(Locale.ROOT, " %s=%.1f/%.1fus",
+                    stage.getName(), histogram.getMeanNanos() / NANOS_PER_MICRO,
+                    histogram.getQuantileNanos(0.99) / NANOS_PER_MICRO));
+        }
+
+        Map<String, Long> errors = getErrorCounts();
+        if (!errors.isEmpty()) {
+            line.append(" errors=").append(errors);
+        }
+
+        return line.toString();
+    }
+
+    @Override
+    public long getFilesVisited() {
+        return filesVisited.sum();
+    }
+
+    @Override
+    public long getBytesHashed() {
+        return bytesHashed.sum();
+    }
+
+    @Override
+    public double getElapsedSeconds() {
+        return (System.nanoTime() - startNanos) / NANOS_PER_SECOND;
+    }
+
+    @Override
+    public double getThroughputMegabytesPerSecond() {
+        double elapsedSeconds = getElapsedSeconds();
+
+        return elapsedSeconds == 0 ? 0 : getBytesHashed() / BYTES_PER_MEGABYTE / elapsedSeconds;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        errorCounts.forEach((name, count) -> result.put(name, count.sum()));
+
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getStageCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        stageHistograms.forEach((stage, histogram) -> result.put(stage.getName(), histogram.getCount()));
+
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getStageMeanMicros() {
+        Map<String, Double> result = new TreeMap<>();
+        stageHistograms.forEach((stage, histogram) ->
+                result.put(stage.getName(), histogram.getMeanNanos() / NANOS_PER_MICRO));
+
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getStageP50Micros() {
+        return getStageQuantileMicros(0.5);
+    }
+
+    @Override
+    public Map<String, Double> getStageP99Micros() {
+        return getStageQuantileMicros(0.99);
+    }
+
+    private Map<String, Double> getStageQuantileMicros(double quantile) {
+        Map<String, Double> result = new TreeMap<>();
+        stageHistograms.forEach((stage, histogram) ->
+                result.put(stage.getName(), histogram.getQuantileNanos(quantile) / NANOS_PER_MICRO));
+
+        return result;
+    }
+
+    @Override
+    public long[] getStageHistogram(String stage) {
+        for (Stage value : Stage.values()) {
+            if (value.getName().equals(stage)) {
+                return stageHistograms.get(value).getBuckets();
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown stage '" + stage + "'");
+    }
+}
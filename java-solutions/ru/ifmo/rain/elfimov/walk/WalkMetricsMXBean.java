@@ -0,0 +1,49 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link WalkMetrics}, registered as
+ * <strong>ru.ifmo.rain.elfimov.walk:type=RecursiveWalk</strong>.
+ * <br>
+ * Stages are names of {@link WalkMetrics.Stage}: stat, open, read, hash and write.
+ */
+public interface WalkMetricsMXBean {
+    long getFilesVisited();
+
+    long getBytesHashed();
+
+    double getElapsedSeconds();
+
+    double getThroughputMegabytesPerSecond();
+
+    /**
+     * Get number of files submitted to workers but not written yet.
+     *
+     * @return current queue depth.
+     */
+    int getQueueDepth();
+
+    /**
+     * Get number of errors by simple name of exception class.
+     *
+     * @return error counts.
+     */
+    Map<String, Long> getErrorCounts();
+
+    Map<String, Long> getStageCounts();
+
+    Map<String, Double> getStageMeanMicros();
+
+    Map<String, Double> getStageP50Micros();
+
+    Map<String, Double> getStageP99Micros();
+
+    /**
+     * Get latency histogram of <strong>stage</strong>.
+     *
+     * @param stage name of stage.
+     * @return counts of latencies in [2<sup>i - 1</sup>, 2<sup>i</sup>) nanoseconds for each i.
+     */
+    long[] getStageHistogram(String stage);
+}
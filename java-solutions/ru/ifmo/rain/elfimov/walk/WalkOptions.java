@@ -0,0 +1,478 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Command line options of {@link RecursiveWalk}.
+ * <br>
+ * Usage: java RecursiveWalk &lt;input file&gt; &lt;output file&gt; [options]
+ * <br>
+ * Input file <strong>-</strong> is standard input, paths are walked as soon as they are read.
+ * Output file <strong>-</strong> is standard output.
+ * <br>
+ * Options:
+ * <ul>
+ *     <li><strong>--threads n</strong> hash files in <strong>n</strong> threads;</li>
+ *     <li><strong>--mmap-threshold bytes</strong> memory-map files not smaller than <strong>bytes</strong>;</li>
+ *     <li><strong>--hash algorithm</strong> hash files by one of {@link HashAlgorithm} names, fnv32 by default;</li>
+ *     <li><strong>--cache file</strong> keep hashes in cache <strong>file</strong> and skip unchanged files;</li>
+ *     <li><strong>--stdin-data</strong> hash the content of standard input for input line <strong>-</strong>;</li>
+ *     <li><strong>--fork-join</strong> walk directories of all roots as fork/join tasks in <strong>--threads</strong> workers;</li>
+ *     <li><strong>--chunks</strong> also write hashes of content-defined chunks of each file;</li>
+ *     <li><strong>--chunk-size bytes</strong> average chunk size, a power of two, 8192 by default;</li>
+ *     <li><strong>--duplicates</strong> write only groups of files with equal content;</li>
+ *     <li><strong>--async files</strong> read up to <strong>files</strong> files asynchronously,
+ *     hashing their content in <strong>--threads</strong> completion threads;</li>
+ *     <li><strong>--virtual-threads files</strong> hash each file in a virtual thread,
+ *     keeping up to <strong>files</strong> files open, requires Java 21;</li>
+ *     <li><strong>--include glob</strong>, <strong>--exclude glob</strong> hash only files matching
+ *     any included glob and skip files and directories matching any excluded glob;</li>
+ *     <li><strong>--include-regex regex</strong>, <strong>--exclude-regex regex</strong> the same rules
+ *     by regular expressions over relative paths;</li>
+ *     <li><strong>--max-depth n</strong> hash files at most <strong>n</strong> levels below each root;</li>
+ *     <li><strong>--max-size bytes</strong> skip files larger than <strong>bytes</strong>;</li>
+ *     <li><strong>--modified-since time</strong> skip files modified before an ISO-8601 instant or date;</li>
+ *     <li><strong>--retries n</strong> read files again up to <strong>n</strong> times after transient errors,
+ *     0 by default;</li>
+ *     <li><strong>--retry-delay millis</strong> wait <strong>millis</strong> before the first retry, 100 by default,
+ *     and twice as long before each next one;</li>
+ *     <li><strong>--error-log file</strong> write paths and causes of failed files to <strong>file</strong>;</li>
+ *     <li><strong>--fail-fast</strong> stop the walk on the first file, which cannot be read,
+ *     instead of writing its zero hash;</li>
+ *     <li><strong>--checkpoint file</strong> save position of the walk to <strong>file</strong>
+ *     every <strong>--checkpoint-period</strong> seconds, 60 by default;</li>
+ *     <li><strong>--resume</strong> continue the walk from <strong>--checkpoint</strong> file, if it exists;</li>
+ *     <li><strong>--shard i/N</strong> walk only input lines of shard <strong>i</strong> of <strong>N</strong>
+ *     and write output records and their index to <strong>output file.index</strong> for {@link ShardMerge};</li>
+ *     <li><strong>--shard-entries</strong> split top-level entries of each root between shards instead of input lines;</li>
+ *     <li><strong>--manifest</strong> write output file as a binary {@link HashManifest} for {@link WalkVerify},
+ *     which reads manifests up to 2 GiB only;</li>
+ *     <li><strong>--jmx</strong> expose {@link WalkMetricsMXBean} of the run through the platform MBean server;</li>
+ *     <li><strong>--progress seconds</strong> print progress to standard error every <strong>seconds</strong>.</li>
+ * </ul>
+ */
+class WalkOptions {
+    static final String STANDARD_STREAM = "-";
+    static final String USAGE = "Usage: java RecursiveWalk <input file> <output file> [options]";
+
+    private static final int DEFAULT_THREADS = 1;
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 13;
+    private static final int DEFAULT_CHECKPOINT_PERIOD = 60;
+
+    private String inputFile;
+    private String outputFile;
+    private int threads = DEFAULT_THREADS;
+    private long mappingThreshold = FileContentReader.DEFAULT_MAPPING_THRESHOLD;
+    private HashAlgorithm algorithm = HashAlgorithm.FNV32;
+    private String cacheFile;
+    private boolean standardInputData;
+    private boolean forkJoin;
+    private boolean chunks;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private boolean duplicates;
+    private int asyncFiles;
+    private int virtualThreadFiles;
+    private final WalkFilter filter = new WalkFilter();
+    private int retries;
+    private long retryDelay = FailurePolicy.DEFAULT_RETRY_DELAY;
+    private String errorLogFile;
+    private boolean failFast;
+    private String checkpointFile;
+    private int checkpointPeriod = DEFAULT_CHECKPOINT_PERIOD;
+    private boolean resume;
+    private String shard;
+    private boolean shardEntries;
+    private boolean manifest;
+    private WalkShard walkShard = WalkShard.WHOLE;
+    private boolean jmx;
+    private int progressPeriod;
+
+    private WalkOptions() {
+    }
+
+    /**
+     * Parse <strong>args</strong> into {@link WalkOptions}.
+     * <br>
+     * Two positional arguments are required: input and output files.
+     * Each option is followed by its value.
+     *
+     * @param args program arguments.
+     * @return parsed options.
+     * @throws RecursiveWalkException when arguments are missing, unknown or incorrect.
+     */
+    static WalkOptions parse(String[] args) throws RecursiveWalkException {
+        if (args == null) {
+            throw new RecursiveWalkException(USAGE);
+        }
+
+        WalkOptions options = new WalkOptions();
+        int positional = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            String argument = args[i];
+
+            if (argument == null) {
+                throw new RecursiveWalkException(USAGE);
+            }
+
+            if (argument.startsWith("--")) {
+                switch (argument) {
+                    case "--threads":
+                        options.threads = parsePositiveInt(getValue(args, ++i, argument), argument);
+                        break;
+                    case "--mmap-threshold":
+                        options.mappingThreshold = parseNonNegativeLong(getValue(args, ++i, argument), argument);
+                        break;
+                    case "--hash":
+                        options.algorithm = HashAlgorithm.forName(getValue(args, ++i, argument));
+                        break;
+                    case "--cache":
+                        options.cacheFile = getValue(args, ++i, argument);
+                        break;
+                    case "--stdin-data":
+                        options.standardInputData = true;
+                        break;
+                    case "--fork-join":
+                        options.forkJoin = true;
+                        break;
+                    case "--chunks":
+                        options.chunks = true;
+                        break;
+                    case "--chunk-size":
+                        options.chunkSize = parsePositiveInt(getValue(args, ++i, argument), argument);
+
+                        if (Integer.bitCount(options.chunkSize) != 1) {
+                            throw new RecursiveWalkException("Option '" + argument + "' must be a power of two");
+                        }
+                        break;
+                    case "--duplicates":
+                        options.duplicates = true;
+                        break;
+                    case "--async":
+                        options.asyncFiles = parsePositiveInt(getValue(args, ++i, argument), argument);
+                        break;
+                    case "--virtual-threads":
+                        options.virtualThreadFiles = parsePositiveInt(getValue(args, ++i, argument), argument);
+                        break;
+                    case "--include":
+                        options.filter.include(getValue(args, ++i, argument));
+                        break;
+                    case "--exclude":
+                        options.filter.exclude(getValue(args, ++i, argument));
+                        break;
+                    case "--include-regex":
+                        options.filter.includeRegex(getValue(args, ++i, argument));
+                        break;
+                    case "--exclude-regex":
+                        options.filter.excludeRegex(getValue(args, ++i, argument));
+                        break;
+                    case "--max-depth":
+                        options.filter.setMaxDepth(parseNonNegativeInt(getValue(args, ++i, argument), argument));
+                        break;
+                    case "--max-size":
+                        options.filter.setMaxSize(parseNonNegativeLong(getValue(args, ++i, argument), argument));
+                        break;
+                    case "--modified-since":
+                        options.filter.setModifiedSince(parseInstant(getValue(args, ++i, argument), argument));
+                        break;
+                    case "--retries":
+                        options.retries = parseNonNegativeInt(getValue(args, ++i, argument), argument);
+                        break;
+                    case "--retry-delay":
+                        options.retryDelay = parsePositiveInt(getValue(args, ++i, argument), argument);
+                        break;
+                    case "--error-log":
+                        options.errorLogFile = getValue(args, ++i, argument);
+                        break;
+                    case "--fail-fast":
+                        options.failFast = true;
+                        break;
+                    case "--checkpoint":
+                        options.checkpointFile = getValue(args, ++i, argument);
+                        break;
+                    case "--checkpoint-period":
+                        options.checkpointPeriod = parsePositiveInt(getValue(args, ++i, argument), argument);
+                        break;
+                    case "--resume":
+                        options.resume = true;
+                        break;
+                    case "--shard":
+                        options.shard = getValue(args, ++i, argument);
+                        break;
+                    case "--shard-entries":
+                        options.shardEntries = true;
+                        break;
+                    case "--manifest":
+                        options.manifest = true;
+                        break;
+                    case "--jmx":
+                        options.jmx = true;
+                        break;
+                    case "--progress":
+                        options.progressPeriod = parsePositiveInt(getValue(args, ++i, argument), argument);
+                        break;
+                    default:
+                        throw new RecursiveWalkException("Unknown option '" + argument + "'. " + USAGE);
+                }
+            } else {
+                switch (positional++) {
+                    case 0:
+                        options.inputFile = argument;
+                        break;
+                    case 1:
+                        options.outputFile = argument;
+                        break;
+                    default:
+                        throw new RecursiveWalkException(USAGE);
+                }
+            }
+        }
+
+        if (positional != 2) {
+            throw new RecursiveWalkException(USAGE);
+        }
+
+        if (options.standardInputData && options.isStandardInput()) {
+            throw new RecursiveWalkException("Standard input cannot be both input file and data source");
+        }
+
+        if (options.chunks && options.cacheFile != null) {
+            throw new RecursiveWalkException("Chunk hashes are not cached, options '--chunks' and '--cache' are incompatible");
+        }
+
+        if (options.duplicates && (options.chunks || options.forkJoin || options.standardInputData)) {
+            throw new RecursiveWalkException("Option '--duplicates' is incompatible with '--chunks', '--fork-join' and '--stdin-data'");
+        }
+
+        if (options.asyncFiles > 0 && (options.forkJoin || options.duplicates)) {
+            throw new RecursiveWalkException("Option '--async' is incompatible with '--fork-join' and '--duplicates'");
+        }
+
+        if (options.virtualThreadFiles > 0 && (options.asyncFiles > 0 || options.forkJoin || options.duplicates)) {
+            throw new RecursiveWalkException("Option '--virtual-threads' is incompatible with '--async', '--fork-join' and '--duplicates'");
+        }
+
+        if (options.shard != null) {
+            options.walkShard = WalkShard.parse(options.shard, options.shardEntries);
+
+            if (options.isStandardOutput() || options.checkpointFile != null || options.forkJoin || options.duplicates) {
+                throw new RecursiveWalkException("Option '--shard' requires output file "
+                        + "and is incompatible with '--checkpoint', '--fork-join' and '--duplicates'");
+            }
+        } else if (options.shardEntries) {
+            throw new RecursiveWalkException("Option '--shard-entries' requires '--shard'");
+        }
+
+        if (options.manifest && (options.isStandardOutput() || options.chunks || options.duplicates
+                || options.checkpointFile != null || options.shard != null)) {
+            throw new RecursiveWalkException("Option '--manifest' requires output file "
+                    + "and is incompatible with '--chunks', '--duplicates', '--checkpoint' and '--shard'");
+        }
+
+        if (options.resume && options.checkpointFile == null) {
+            throw new RecursiveWalkException("Option '--resume' requires '--checkpoint'");
+        }
+
+        if (options.checkpointFile != null && (options.isStandardInput() || options.isStandardOutput()
+                || options.standardInputData || options.forkJoin || options.duplicates)) {
+            throw new RecursiveWalkException("Option '--checkpoint' requires input and output files "
+                    + "and is incompatible with '--stdin-data', '--fork-join' and '--duplicates'");
+        }
+
+        return options;
+    }
+
+    private static String getValue(String[] args, int position, String option) throws RecursiveWalkException {
+        if (position >= args.length || args[position] == null) {
+            throw new RecursiveWalkException("Option '" + option + "' requires a value. " + USAGE);
+        }
+
+        return args[position];
+    }
+
+    private static int parsePositiveInt(String value, String option) throws RecursiveWalkException {
+        try {
+            int result = Integer.parseInt(value);
+
+            if (result < 1) {
+                throw new RecursiveWalkException("Option '" + option + "' must be a positive integer");
+            }
+
+            return result;
+        } catch (NumberFormatException e) {
+            throw new RecursiveWalkException("Option '" + option + "' must be a positive integer", e);
+        }
+    }
+
+    private static int parseNonNegativeInt(String value, String option) throws RecursiveWalkException {
+        long result = parseNonNegativeLong(value, option);
+
+        if (result > Integer.MAX_VALUE) {
+            throw new RecursiveWalkException("Option '" + option + "' must be at most " + Integer.MAX_VALUE);
+        }
+
+        return (int) result;
+    }
+
+    private static Instant parseInstant(String value, String option) throws RecursiveWalkException {
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+            } catch (DateTimeParseException dateException) {
+                throw new RecursiveWalkException("Option '" + option + "' must be an ISO-8601 instant or date", dateException);
+            }
+        }
+    }
+
+    private static long parseNonNegativeLong(String value, String option) throws RecursiveWalkException {
+        try {
+            long result = Long.parseLong(value);
+
+            if (result < 0) {
+                throw new RecursiveWalkException("Option '" + option + "' must be a non-negative integer");
+            }
+
+            return result;
+        } catch (NumberFormatException e) {
+            throw new RecursiveWalkException("Option '" + option + "' must be a non-negative integer", e);
+        }
+    }
+
+    String getInputFile() {
+        return inputFile;
+    }
+
+    String getOutputFile() {
+        return outputFile;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    long getMappingThreshold() {
+        return mappingThreshold;
+    }
+
+    HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    String getCacheFile() {
+        return cacheFile;
+    }
+
+    boolean isStandardInput() {
+        return STANDARD_STREAM.equals(inputFile);
+    }
+
+    boolean isStandardOutput() {
+        return STANDARD_STREAM.equals(outputFile);
+    }
+
+    boolean isStandardInputData() {
+        return standardInputData;
+    }
+
+    boolean isForkJoin() {
+        return forkJoin;
+    }
+
+    boolean isDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Get maximal number of files read asynchronously.
+     *
+     * @return number of files or <strong>0</strong> if files are read synchronously.
+     */
+    int getAsyncFiles() {
+        return asyncFiles;
+    }
+
+    /**
+     * Get maximal number of files hashed in virtual threads at once.
+     *
+     * @return number of files or <strong>0</strong> if virtual threads are not used.
+     */
+    int getVirtualThreadFiles() {
+        return virtualThreadFiles;
+    }
+
+    WalkFilter getFilter() {
+        return filter;
+    }
+
+    int getRetries() {
+        return retries;
+    }
+
+    long getRetryDelay() {
+        return retryDelay;
+    }
+
+    String getErrorLogFile() {
+        return errorLogFile;
+    }
+
+    boolean isFailFast() {
+        return failFast;
+    }
+
+    String getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    int getCheckpointPeriod() {
+        return checkpointPeriod;
+    }
+
+    boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * Get shard of the walk.
+     *
+     * @return shard or {@link WalkShard#WHOLE} if the walk is not sharded.
+     */
+    WalkShard getShard() {
+        return walkShard;
+    }
+
+    boolean isSharded() {
+        return walkShard != WalkShard.WHOLE;
+    }
+
+    boolean isManifest() {
+        return manifest;
+    }
+
+    boolean isJmx() {
+        return jmx;
+    }
+
+    /**
+     * Get period of progress lines.
+     *
+     * @return period in seconds or <strong>0</strong> if progress is not printed.
+     */
+    int getProgressPeriod() {
+        return progressPeriod;
+    }
+
+    /**
+     * Get average size of content-defined chunks.
+     *
+     * @return chunk size or <strong>0</strong> if chunks are not hashed.
+     */
+    int getChunkSize() {
+        return chunks ? chunkSize : 0;
+    }
+}
@@ -0,0 +1,100 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One of <strong>count</strong> shards of a walk, split between processes by a stable hash.
+ * <br>
+ * By default whole input lines are split by the hash of the line. When top-level entries are split,
+ * every shard lists each root, but walks only the entries of the root, which names hash to the shard.
+ * Lines of a root file or a failed root belong to the shard of the input line.
+ * <br>
+ * The hash is 32-bit FNV-1a of UTF-8 bytes, so all processes agree on shards regardless of JVM.
+ */
+class WalkShard {
+    private static final int OFFSET_BASIS = 0x811c9dc5;
+    private static final int PRIME = 0x01000193;
+
+    /**
+     * The only shard of a walk, which is not split.
+     */
+    static final WalkShard WHOLE = new WalkShard(0, 1, false);
+
+    private final int index;
+    private final int count;
+    private final boolean byEntries;
+
+    private WalkShard(int index, int count, boolean byEntries) {
+        this.index = index;
+        this.count = count;
+        this.byEntries = byEntries;
+    }
+
+    /**
+     * Parse shard from <strong>"i/N"</strong> form, where <strong>0 &lt;= i &lt; N</strong>.
+     *
+     * @param value shard in "i/N" form.
+     * @param byEntries whether top-level entries of roots are split instead of input lines.
+     * @return parsed shard.
+     * @throws RecursiveWalkException when the shard is incorrect.
+     */
+    static WalkShard parse(String value, boolean byEntries) throws RecursiveWalkException {
+        String[] parts = value.split("/");
+
+        try {
+            if (parts.length == 2) {
+                int index = Integer.parseInt(parts[0]);
+                int count = Integer.parseInt(parts[1]);
+
+                if (0 <= index && index < count) {
+                    return new WalkShard(index, count, byEntries);
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new RecursiveWalkException("Shard must be 'i/N' with 0 <= i < N", e);
+        }
+
+        throw new RecursiveWalkException("Shard must be 'i/N' with 0 <= i < N");
+    }
+
+    /**
+     * Check whether root of input <strong>line</strong> should be walked at all.
+     *
+     * @param line an input line.
+     * @return <strong>true</strong> if some files of the root belong to this shard.
+     */
+    boolean acceptsRoot(String line) {
+        return byEntries || owns(line);
+    }
+
+    /**
+     * Check whether the root itself, when it is a file or cannot be visited, belongs to this shard.
+     *
+     * @param line an input line.
+     * @return <strong>true</strong> if the line of the root should be written by this shard.
+     */
+    boolean acceptsRootFile(String line) {
+        return owns(line);
+    }
+
+    /**
+     * Check whether top-level entry <strong>name</strong> of root of input <strong>line</strong> should be walked.
+     *
+     * @param line an input line.
+     * @param name a name of the entry.
+     * @return <strong>true</strong> if the entry belongs to this shard.
+     */
+    boolean acceptsEntry(String line, String name) {
+        return !byEntries || owns(line + "/" + name);
+    }
+
+    private boolean owns(String value) {
+        int hash = OFFSET_BASIS;
+
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * PRIME;
+        }
+
+        return Integer.remainderUnsigned(hash, count) == index;
+    }
+}
@@ -0,0 +1,204 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A tool, checking files against a {@link HashManifest} written by {@link RecursiveWalk} with <strong>--manifest</strong>.
+ * <br>
+ * Usage: java WalkVerify &lt;report file&gt; &lt;manifest&gt; [--threads n]
+ * <br>
+ * Report file <strong>-</strong> is standard output. Each failed file is written as a line
+ * <strong>"M path"</strong> if its hash differs and <strong>"D path"</strong> if it does not exist.
+ * Entries of files, which could not be read in the walk, are marked failed and match files,
+ * which still cannot be read or do not exist.
+ * <br>
+ * Only entries of the manifest are checked: the walked roots are not listed again,
+ * so files added to them since the walk are not reported.
+ * <br>
+ * Blocks of the memory-mapped manifest are verified in <strong>n</strong> threads, available processors by default,
+ * and reported in manifest order. The process exits with status <strong>1</strong> if some file failed
+ * and <strong>2</strong> if verification could not be completed.
+ */
+public class WalkVerify {
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+    private static final String USAGE = "Usage: java WalkVerify <report file> <manifest> [--threads n]. "
+            + "Only files listed in the manifest are checked, added files are not reported";
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    /**
+     * Verify files of the manifest.
+     *
+     * @param args program arguments.
+     * @return <strong>true</strong> if all files match the manifest.
+     * @throws RecursiveWalkException when arguments are incorrect or manifest cannot be read.
+     */
+    public boolean run(String[] args) throws RecursiveWalkException {
+        if (args == null || (args.length != 2 && args.length != 4) || Arrays.asList(args).contains(null)) {
+            throw new RecursiveWalkException(USAGE);
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length == 4) {
+            if (!"--threads".equals(args[2])) {
+                throw new RecursiveWalkException(USAGE);
+            }
+            threads = parseThreads(args[3]);
+        }
+
+        try {
+            HashManifest manifest = HashManifest.open(Paths.get(args[1]));
+
+            try (Writer report = openReport(args[0])) {
+                return verify(manifest, threads, report);
+            } catch (RecursiveWalkException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new RecursiveWalkException("Cannot write report file '" + args[0] + "'", e);
+            }
+        } catch (InvalidPathException e) {
+            throw new RecursiveWalkException("Arguments must be correct file paths", e);
+        }
+    }
+
+    private static int parseThreads(String value) throws RecursiveWalkException {
+        try {
+            int threads = Integer.parseInt(value);
+
+            if (threads < 1) {
+                throw new RecursiveWalkException("Option '--threads' must be a positive integer");
+            }
+
+            return threads;
+        } catch (NumberFormatException e) {
+            throw new RecursiveWalkException("Option '--threads' must be a positive integer", e);
+        }
+    }
+
+    private static Writer openReport(String file) throws IOException {
+        if (WalkOptions.STANDARD_STREAM.equals(file)) {
+            return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), CHARSET)) {
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+        }
+
+        return Files.newBufferedWriter(Paths.get(file), CHARSET);
+    }
+
+    private static boolean verify(HashManifest manifest, int threads, Writer report) throws IOException {
+        WalkMetrics metrics = new WalkMetrics();
+        FileHashCalculator calculator = new FileHashCalculator(
+                new FileContentReader(FileContentReader.DEFAULT_MAPPING_THRESHOLD, metrics),
+                manifest.getAlgorithm(), null, 0, metrics);
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        Deque<Future<List<String>>> blocks = new ArrayDeque<>();
+        boolean verified = true;
+
+        try {
+            for (int block = 0; block < manifest.getBlockCount() || !blocks.isEmpty(); block++) {
+                if (block < manifest.getBlockCount()) {
+                    int current = block;
+                    blocks.add(executorService.submit(() -> verifyBlock(manifest, current, calculator)));
+                }
+
+                // Reports of at most BLOCKS_PER_THREAD blocks per thread are kept in memory.
+                if (blocks.size() >= threads * BLOCKS_PER_THREAD || block >= manifest.getBlockCount() - 1) {
+                    for (String line : getReport(blocks.remove())) {
+                        report.write(line);
+                        report.write(System.lineSeparator());
+                        verified = false;
+                    }
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        return verified;
+    }
+
+    private static List<String> getReport(Future<List<String>> block) throws RecursiveWalkException {
+        try {
+            return block.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RecursiveWalkException) {
+                throw (RecursiveWalkException) e.getCause();
+            }
+
+            throw new RecursiveWalkException("Verification failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RecursiveWalkException("Verification was interrupted", e);
+        }
+    }
+
+    private static List<String> verifyBlock(HashManifest manifest, int block, FileHashCalculator calculator)
+            throws RecursiveWalkException {
+        List<String> report = new ArrayList<>();
+
+        manifest.readBlock(block, (file, hash, failed) -> {
+            char change = verifyFile(file, hash, failed, calculator);
+
+            if (change != 0) {
+                report.add(change + " " + file);
+            }
+        });
+
+        return report;
+    }
+
+    private static char verifyFile(String file, byte[] hash, boolean failed, FileHashCalculator calculator) {
+        HashResult result;
+
+        try {
+            Path path = Paths.get(file);
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+
+            result = calculator.calculate(path, attributes);
+        } catch (NoSuchFileException e) {
+            // A file, which was missing in the walk too, is a failed entry of the manifest.
+            return failed ? 0 : 'D';
+        } catch (IOException | InvalidPathException e) {
+            result = calculator.getFailedResult(file, e);
+        }
+
+        // Hashes of failed files are placeholders and are not compared.
+        return result.isFailed() == failed && (failed || Arrays.equals(hash, result.getHash())) ? 0 : 'M';
+    }
+
+    public static void main(String[] args) {
+        try {
+            if (!new WalkVerify().run(args)) {
+                System.exit(1);
+            }
+        } catch (RecursiveWalkException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+    }
+}
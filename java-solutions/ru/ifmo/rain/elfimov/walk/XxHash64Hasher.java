@@ -0,0 +1,147 @@
+package ru.ifmo.rain.elfimov.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 64-bit xxHash with zero seed.
+ * <br>
+ * Content is consumed by 32-byte stripes of four little-endian words.
+ * Bytes of an incomplete stripe are kept until the next update or {@link #digest()}.
+ */
+public class XxHash64Hasher implements FileHasher {
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE_SIZE = 32;
+
+    private final ByteBuffer stripe = ByteBuffer.allocate(STRIPE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long accumulator1;
+    private long accumulator2;
+    private long accumulator3;
+    private long accumulator4;
+    private long totalLength;
+
+    public XxHash64Hasher() {
+        reset();
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        totalLength += buffer.remaining();
+
+        if (stripe.position() > 0) {
+            while (stripe.hasRemaining() && buffer.hasRemaining()) {
+                stripe.put(buffer.get());
+            }
+
+            if (stripe.hasRemaining()) {
+                return;
+            }
+
+            stripe.flip();
+            consumeStripes(stripe);
+            stripe.clear();
+        }
+
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        consumeStripes(buffer);
+        buffer.order(order);
+
+        stripe.put(buffer);
+    }
+
+    private void consumeStripes(ByteBuffer buffer) {
+        long v1 = accumulator1;
+        long v2 = accumulator2;
+        long v3 = accumulator3;
+        long v4 = accumulator4;
+
+        int position = buffer.position();
+        int limit = buffer.limit() - STRIPE_SIZE;
+
+        for (; position <= limit; position += STRIPE_SIZE) {
+            v1 = round(v1, buffer.getLong(position));
+            v2 = round(v2, buffer.getLong(position + 8));
+            v3 = round(v3, buffer.getLong(position + 16));
+            v4 = round(v4, buffer.getLong(position + 24));
+        }
+
+        buffer.position(position);
+
+        accumulator1 = v1;
+        accumulator2 = v2;
+        accumulator3 = v3;
+        accumulator4 = v4;
+    }
+
+    @Override
+    public byte[] digest() {
+        long hash;
+
+        if (totalLength >= STRIPE_SIZE) {
+            hash = Long.rotateLeft(accumulator1, 1) + Long.rotateLeft(accumulator2, 7)
+                    + Long.rotateLeft(accumulator3, 12) + Long.rotateLeft(accumulator4, 18);
+            hash = mergeRound(hash, accumulator1);
+            hash = mergeRound(hash, accumulator2);
+            hash = mergeRound(hash, accumulator3);
+            hash = mergeRound(hash, accumulator4);
+        } else {
+            hash = PRIME_5;
+        }
+
+        hash += totalLength;
+
+        stripe.flip();
+        while (stripe.remaining() >= Long.BYTES) {
+            hash ^= round(0, stripe.getLong());
+            hash = Long.rotateLeft(hash, 27) * PRIME_1 + PRIME_4;
+        }
+
+        if (stripe.remaining() >= Integer.BYTES) {
+            hash ^= (stripe.getInt() & 0xffffffffL) * PRIME_1;
+            hash = Long.rotateLeft(hash, 23) * PRIME_2 + PRIME_3;
+        }
+
+        while (stripe.hasRemaining()) {
+            hash ^= (stripe.get() & 0xff) * PRIME_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME_1;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME_3;
+        hash ^= hash >>> 32;
+
+        reset();
+
+        return ByteBuffer.allocate(Long.BYTES).putLong(hash).array();
+    }
+
+    @Override
+    public void reset() {
+        accumulator1 = PRIME_1 + PRIME_2;
+        accumulator2 = PRIME_2;
+        accumulator3 = 0;
+        accumulator4 = -PRIME_1;
+        totalLength = 0;
+        stripe.clear();
+    }
+
+    private static long round(long accumulator, long input) {
+        accumulator += input * PRIME_2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+
+        return accumulator * PRIME_1;
+    }
+
+    private static long mergeRound(long accumulator, long value) {
+        accumulator ^= round(0, value);
+
+        return accumulator * PRIME_1 + PRIME_4;
+    }
+}
@@ -0,0 +1,9 @@
+#!/bin/bash
+mkdir -p _build
+sourceCodeFolder="../../../../../../java-solutions/ru/ifmo/rain/elfimov/walk"
+benchmarkFolder="../../../../../../java-benchmarks/ru/ifmo/rain/elfimov/walk"
+javac -d _build $(find "$sourceCodeFolder" -maxdepth 1 -name "*.java") "$benchmarkFolder/ExecutionModeBenchmark.java"
+
+java -cp _build ru.ifmo.rain.elfimov.walk.ExecutionModeBenchmark "$@"
+
+exit $?
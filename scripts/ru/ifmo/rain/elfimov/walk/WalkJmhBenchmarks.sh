@@ -0,0 +1,14 @@
+#!/bin/bash
+# JMH jars (jmh-core, jmh-generator-annprocess, jopt-simple, commons-math3) are looked up in $JMH_LIB.
+pathToJmhFolder="${JMH_LIB:-../../../../../../lib/jmh}"
+jmhClassPath=$(find "$pathToJmhFolder" -name "*.jar" | tr '\n' ':')
+sourceCodeFolder="../../../../../../java-solutions/ru/ifmo/rain/elfimov/walk"
+benchmarkFolder="../../../../../../java-benchmarks/ru/ifmo/rain/elfimov/walk"
+
+mkdir -p _jmh
+javac -cp "$jmhClassPath" -processorpath "$jmhClassPath" -d _jmh \
+    $(find "$sourceCodeFolder" -maxdepth 1 -name "*.java") $(find "$benchmarkFolder" -name "*.java")
+
+java -cp "_jmh:$jmhClassPath" org.openjdk.jmh.Main "$@"
+
+exit $?